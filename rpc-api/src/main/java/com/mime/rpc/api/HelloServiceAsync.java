@@ -0,0 +1,13 @@
+package com.mime.rpc.api;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HelloService的异步伴生接口，只在客户端使用，服务端不需要实现
+ * 调用时请求的仍是HelloService服务，返回的future在响应到达时完成，不阻塞调用线程
+ */
+public interface HelloServiceAsync {
+
+    CompletableFuture<String> hello(HelloObject object);
+
+}
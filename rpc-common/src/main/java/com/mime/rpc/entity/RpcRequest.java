@@ -20,8 +20,9 @@ public class RpcRequest implements Serializable {
 
     /**
      * 请求号
+     * 由客户端在选定连接后分配，同一连接内单调递增，随帧头传输，所以不再重复写入消息体
      */
-    private String requestId;
+    private transient long requestId;
 
     /**
      * 待调用接口名称
@@ -48,6 +49,13 @@ public class RpcRequest implements Serializable {
      */
     private Boolean heartBeat;
 
+    /**
+     * 客户端为每个方法分配的编号，0表示未分配
+     * 每条连接上某个方法的第一次请求同时携带接口名、方法名、参数类型和编号，服务端在该连接上记下编号与方法的对应关系，
+     * 之后的请求只携带编号和参数，不再重复传输接口名、方法名和参数类型数组
+     */
+    private int methodId;
+
 
     /**
      * 无参构造器，序列化时例如Kryo需要
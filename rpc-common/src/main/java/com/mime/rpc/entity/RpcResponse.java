@@ -13,9 +13,9 @@ import java.io.Serializable;
 public class RpcResponse<T> implements Serializable {
 
     /**
-     * 响应对应的请求号
+     * 响应对应的请求号，随帧头传输，所以不再重复写入消息体
      */
-    private String requestId;
+    private transient long requestId;
 
     /**
      * 响应状态码
@@ -38,7 +38,7 @@ public class RpcResponse<T> implements Serializable {
     public RpcResponse() {
     }
 
-    public static <T> RpcResponse<T> success(T data, String requestId) {
+    public static <T> RpcResponse<T> success(T data, long requestId) {
         RpcResponse<T> response = new RpcResponse<>();
         response.setRequestId(requestId);
         response.setStatusCode(ResponseCode.SUCCESS.getCode());
@@ -46,7 +46,7 @@ public class RpcResponse<T> implements Serializable {
         return response;
     }
 
-    public static <T> RpcResponse<T> fail(ResponseCode code, String requestId) {
+    public static <T> RpcResponse<T> fail(ResponseCode code, long requestId) {
         RpcResponse<T> response = new RpcResponse<>();
         response.setRequestId(requestId);
         response.setStatusCode(code.getCode());
@@ -54,4 +54,12 @@ public class RpcResponse<T> implements Serializable {
         return response;
     }
 
+    public static <T> RpcResponse<T> fail(ResponseCode code, String message, long requestId) {
+        RpcResponse<T> response = new RpcResponse<>();
+        response.setRequestId(requestId);
+        response.setStatusCode(code.getCode());
+        response.setMessage(message);
+        return response;
+    }
+
 }
@@ -21,8 +21,11 @@ public enum RpcError {
     UNKNOWN_PACKAGE_TYPE("不识别的数据包类型"),
     SERIALIZER_NOT_FOUND("找不到序列化器"),
     RESPONSE_NOT_MATCH("响应与请求号不匹配"),
+    REQUEST_TIMEOUT("请求超时"),
+    CHANNEL_CLOSED("连接已断开"),
     FAILED_TO_CONNECT_TO_SERVICE_REGISTRY("连接注册中心失败"),
-    REGISTER_SERVICE_FAILED("注册服务失败");
+    REGISTER_SERVICE_FAILED("注册服务失败"),
+    UNKNOWN_REGISTRY_TYPE("不识别的注册中心类型");
 
     private final String message;
 
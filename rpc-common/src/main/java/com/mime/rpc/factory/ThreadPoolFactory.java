@@ -47,6 +47,66 @@ public class ThreadPoolFactory {
         return pool;
     }
 
+    /**
+     * 创建（或获取已创建的）固定大小、有界队列的线程池，队列满时提交任务会抛出RejectedExecutionException
+     * 用于服务端执行业务方法，调用方据此向客户端返回繁忙响应，而不是无限堆积请求
+     *
+     * @param threads       线程数
+     * @param queueCapacity 等待队列容量
+     */
+    public static ExecutorService createBoundedThreadPool(String threadNamePrefix, int threads, int queueCapacity, Boolean daemon) {
+        return threadPollsMap.computeIfAbsent(threadNamePrefix, k -> {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_TIME, TimeUnit.MINUTES,
+                    new ArrayBlockingQueue<>(queueCapacity), createThreadFactory(threadNamePrefix, daemon), new ThreadPoolExecutor.AbortPolicy());
+            //空闲的核心线程也允许回收，隔离池较多时不会常驻大量线程
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        });
+    }
+
+    /**
+     * 创建（或获取已创建的）每个任务独占一个线程的线程池，没有等待队列，线程数达到上限时提交任务会抛出RejectedExecutionException
+     * 用于BIO服务端的连接：连接会长时间占用线程，排在队列中的连接在前面的连接关闭之前得不到任何处理，不如直接拒绝
+     *
+     * @param maxThreads 最大线程数，即同时处理的最大任务数
+     */
+    public static ExecutorService createDirectHandoffThreadPool(String threadNamePrefix, int maxThreads, Boolean daemon) {
+        return threadPollsMap.computeIfAbsent(threadNamePrefix, k -> {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_TIME, TimeUnit.MINUTES,
+                    new SynchronousQueue<>(), createThreadFactory(threadNamePrefix, daemon), new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        });
+    }
+
+    /**
+     * 创建（或获取已创建的）每个任务一个虚拟线程的执行器，需要JDK 21及以上
+     * 项目按JDK 11编译，所以通过反射调用相关API，当前JDK不支持虚拟线程时返回null
+     */
+    public static ExecutorService createVirtualThreadExecutor(String threadNamePrefix) {
+        ExecutorService executor = threadPollsMap.get(threadNamePrefix);
+        if (executor != null) {
+            return executor;
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix + "-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            ExecutorService created = (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+            executor = threadPollsMap.putIfAbsent(threadNamePrefix, created);
+            if (executor != null) {
+                created.shutdown();
+                return executor;
+            }
+            return created;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("当前JDK不支持虚拟线程: {}", e.toString());
+            return null;
+        }
+    }
+
     /**
      * shutDown 所有线程池--在关闭服务器的时候要调用
      */
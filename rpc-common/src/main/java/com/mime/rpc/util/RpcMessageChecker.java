@@ -24,12 +24,14 @@ public class RpcMessageChecker {
             logger.error("调用服务失败,serviceName:{}", rpcRequest.getInterfaceName());
             throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
+        if (rpcRequest.getRequestId() != rpcResponse.getRequestId()) {
             throw new RpcException(RpcError.RESPONSE_NOT_MATCH, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
         if (rpcResponse.getStatusCode() == null || !rpcResponse.getStatusCode().equals(ResponseCode.SUCCESS.getCode())) {
             logger.error("调用服务失败,serviceName:{},RpcResponse:{}", rpcRequest.getInterfaceName(), rpcResponse);
-            throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+            //带上服务端返回的失败信息，例如业务方法抛出的异常
+            throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName()
+                    + ", " + rpcResponse.getMessage());
         }
     }
 }
@@ -1,11 +1,28 @@
 package com.mime.rpc.config;
 
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
 import com.mime.rpc.factory.SingletonFactory;
 import com.mime.rpc.loadbalancer.ConsistentHashLoadBalance;
+import com.mime.rpc.loadbalancer.LeastActiveLoadBalancer;
 import com.mime.rpc.loadbalancer.LoadBalancer;
+import com.mime.rpc.loadbalancer.P2cEwmaLoadBalancer;
 import com.mime.rpc.loadbalancer.RandomLoadBalancer;
 import com.mime.rpc.loadbalancer.RoundRobinLoadBalancer;
+import com.mime.rpc.loadbalancer.WeightedRandomLoadBalancer;
+import com.mime.rpc.loadbalancer.WeightedRoundRobinLoadBalancer;
+import com.mime.rpc.registry.ServiceDiscovery;
+import com.mime.rpc.registry.ServiceRegistry;
+import com.mime.rpc.registry.direct.DirectServiceDiscovery;
+import com.mime.rpc.registry.local.LocalServiceDiscovery;
+import com.mime.rpc.registry.local.LocalServiceRegistry;
 import com.mime.rpc.registry.nacos.NacosServiceDiscovery;
+import com.mime.rpc.registry.nacos.NacosServiceRegistry;
+import com.mime.rpc.remoting.dispatcher.DirectDispatcher;
+import com.mime.rpc.remoting.dispatcher.Dispatcher;
+import com.mime.rpc.remoting.dispatcher.FixedPoolDispatcher;
+import com.mime.rpc.remoting.dispatcher.IsolatedPoolDispatcher;
+import com.mime.rpc.remoting.dispatcher.VirtualThreadDispatcher;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,6 +34,23 @@ public class RpcConfig {
     static Properties properties;
     public final static String DEFAULT_RPC_ADDRESS="127.0.0.1:8848";
     public final static String DEFAULT_SERVER_ADDRESS="127.0.0.1:9999";
+    public final static long DEFAULT_REQUEST_TIMEOUT=10000;
+    public final static int DEFAULT_CONNECTIONS_PER_ENDPOINT=1;
+    public final static int DEFAULT_CONNECT_TIMEOUT=20000;
+    public final static int DEFAULT_FLUSH_CONSOLIDATION_MESSAGES=256;
+    public final static int DEFAULT_FLUSH_CONSOLIDATION_BYTES=64 * 1024;
+    public final static int DEFAULT_DISPATCHER_THREADS=100;
+    public final static int DEFAULT_DISPATCHER_QUEUE_CAPACITY=1024;
+    public final static int DEFAULT_DISPATCHER_MAX_CONCURRENCY=10000;
+    public final static int DEFAULT_SOCKET_POOL_SIZE=8;
+    public final static long DEFAULT_SOCKET_CLIENT_IDLE_TIMEOUT=30000;
+    public final static int DEFAULT_SOCKET_SERVER_IDLE_TIMEOUT=60000;
+    public final static int DEFAULT_SOCKET_SERVER_MAX_CONNECTIONS=100;
+    public final static int DEFAULT_NETTY_BOSS_THREADS=1;
+    public final static int DEFAULT_NETTY_WRITE_BUFFER_LOW=32 * 1024;
+    public final static int DEFAULT_NETTY_WRITE_BUFFER_HIGH=64 * 1024;
+    public final static double DEFAULT_SERVER_WEIGHT=1.0;
+    public final static long DEFAULT_SERVER_WARMUP=10 * 60 * 1000;
 
     static {
         try (InputStream in = RpcConfig.class.getResourceAsStream("/RpcConfig.properties")) {
@@ -49,14 +83,257 @@ public class RpcConfig {
         return Objects.requireNonNullElse(value, DEFAULT_RPC_ADDRESS);
     }
 
-    //获取客户端选择的负载均衡算法
+    //客户端建立连接的超时时间（毫秒），请求本身的超时从发起调用开始计算，连接的时间也计算在内
+    public static int getConnectTimeout() {
+        String value = properties.getProperty("client.connect.timeout");
+        return value == null ? DEFAULT_CONNECT_TIMEOUT : Integer.parseInt(value.trim());
+    }
+
+    //获取请求超时时间（毫秒），可以用 client.timeout.接口全限定名.方法名 单独配置某个方法，否则使用全局的 client.timeout，不大于0表示不超时
+    public static long getRequestTimeout(String interfaceName, String methodName) {
+        String value = properties.getProperty("client.timeout." + interfaceName + "." + methodName);
+        if (value == null) {
+            value = properties.getProperty("client.timeout");
+        }
+        return value == null ? DEFAULT_REQUEST_TIMEOUT : Long.parseLong(value.trim());
+    }
+
+    //获取客户端到每个服务端地址建立的连接数
+    public static int getConnectionsPerEndpoint() {
+        String value = properties.getProperty("client.connections.per.endpoint");
+        int connections = value == null ? DEFAULT_CONNECTIONS_PER_ENDPOINT : Integer.parseInt(value.trim());
+        return Math.max(connections, 1);
+    }
+
+    //同一地址的多个连接之间如何选择：roundrobin（默认）轮询，leastinflight 选未完成请求最少的连接
+    public static boolean isLeastInFlightConnectionSelect() {
+        return "leastinflight".equals(properties.getProperty("client.connection.select"));
+    }
+
+    //Netty客户端是否使用只带方法编号的精简请求，JSON、GSON序列化时总是发送完整请求
+    public static boolean isCompactRequestEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("client.compact.request", "true"));
+    }
+
+    //合并flush时最多攒多少条消息必须真正flush一次，0表示不合并，每条消息都立即flush
+    public static int getFlushConsolidationMessages() {
+        String value = properties.getProperty("netty.flush.consolidation.messages");
+        return value == null ? DEFAULT_FLUSH_CONSOLIDATION_MESSAGES : Integer.parseInt(value.trim());
+    }
+
+    //合并flush时待写出的数据达到多少字节必须真正flush一次
+    public static int getFlushConsolidationBytes() {
+        String value = properties.getProperty("netty.flush.consolidation.bytes");
+        return value == null ? DEFAULT_FLUSH_CONSOLIDATION_BYTES : Integer.parseInt(value.trim());
+    }
+
+    //获取服务端执行业务方法的派发策略：io 直接在IO线程中执行，fixed（默认）共享业务线程池，isolated 每个服务独立的线程池，virtual 虚拟线程
+    public static Dispatcher getDispatcher() {
+        String value = properties.getProperty("server.dispatcher", "fixed");
+        switch (value) {
+            case "io":
+                return SingletonFactory.getInstance(DirectDispatcher.class);
+            case "isolated":
+                return SingletonFactory.getInstance(IsolatedPoolDispatcher.class);
+            case "virtual":
+                return SingletonFactory.getInstance(VirtualThreadDispatcher.class);
+            default:
+                return SingletonFactory.getInstance(FixedPoolDispatcher.class);
+        }
+    }
+
+    //业务线程池的线程数，serviceName不为空时优先读取该服务单独的配置 server.dispatcher.threads.接口全限定名
+    public static int getDispatcherThreads(String serviceName) {
+        String value = serviceName == null ? null : properties.getProperty("server.dispatcher.threads." + serviceName);
+        if (value == null) {
+            value = properties.getProperty("server.dispatcher.threads");
+        }
+        return value == null ? DEFAULT_DISPATCHER_THREADS : Integer.parseInt(value.trim());
+    }
+
+    //业务线程池等待队列的容量，队列满后新请求被拒绝
+    public static int getDispatcherQueueCapacity() {
+        String value = properties.getProperty("server.dispatcher.queues");
+        return value == null ? DEFAULT_DISPATCHER_QUEUE_CAPACITY : Integer.parseInt(value.trim());
+    }
+
+    //虚拟线程模式下同时执行的最大请求数
+    public static int getDispatcherMaxConcurrency() {
+        String value = properties.getProperty("server.dispatcher.max.concurrent");
+        return value == null ? DEFAULT_DISPATCHER_MAX_CONCURRENCY : Integer.parseInt(value.trim());
+    }
+
+    //Socket方式是否使用虚拟线程（JDK 21及以上）：服务端每个连接一个虚拟线程，客户端的异步调用在虚拟线程中执行
+    public static boolean isSocketVirtualThreads() {
+        return Boolean.parseBoolean(properties.getProperty("socket.virtual.threads", "false"));
+    }
+
+    //BIO客户端每个服务端地址最多保留的空闲连接数
+    public static int getSocketPoolSize() {
+        String value = properties.getProperty("client.socket.pool.size");
+        return value == null ? DEFAULT_SOCKET_POOL_SIZE : Integer.parseInt(value.trim());
+    }
+
+    //BIO客户端空闲连接的最长复用时间（毫秒），应小于服务端的空闲超时
+    public static long getSocketIdleTimeout() {
+        String value = properties.getProperty("client.socket.idle.timeout");
+        return value == null ? DEFAULT_SOCKET_CLIENT_IDLE_TIMEOUT : Long.parseLong(value.trim());
+    }
+
+    //BIO服务端连接的空闲超时（毫秒），超过该时间没有新请求就关闭连接，0表示不超时
+    public static int getSocketServerIdleTimeout() {
+        String value = properties.getProperty("server.socket.idle.timeout");
+        return value == null ? DEFAULT_SOCKET_SERVER_IDLE_TIMEOUT : Integer.parseInt(value.trim());
+    }
+
+    //BIO服务端（非虚拟线程模式）同时服务的最大连接数，每个连接占用一个线程，超出时新连接被拒绝
+    public static int getSocketServerMaxConnections() {
+        String value = properties.getProperty("server.socket.max.connections");
+        return value == null ? DEFAULT_SOCKET_SERVER_MAX_CONNECTIONS : Math.max(Integer.parseInt(value.trim()), 1);
+    }
+
+    //NIO服务端Reactor线程数，默认为CPU核数的一半
+    public static int getNioReactors() {
+        String value = properties.getProperty("server.nio.reactors");
+        int reactors = value == null ? Runtime.getRuntime().availableProcessors() / 2 : Integer.parseInt(value.trim());
+        return Math.max(reactors, 1);
+    }
+
+    //Netty使用的传输层：auto（默认，epoll可用时使用epoll，否则使用NIO）、epoll、nio
+    public static String getNettyTransport() {
+        return properties.getProperty("netty.transport", "auto").trim();
+    }
+
+    //Netty服务端接受连接的线程数
+    public static int getNettyBossThreads() {
+        String value = properties.getProperty("netty.server.boss.threads");
+        return value == null ? DEFAULT_NETTY_BOSS_THREADS : Integer.parseInt(value.trim());
+    }
+
+    //Netty服务端在同一端口上绑定的监听socket数，大于1时借助SO_REUSEPORT由内核分散新连接（仅epoll传输支持）
+    public static int getServerAcceptors() {
+        String value = properties.getProperty("server.acceptors");
+        return value == null ? 1 : Math.max(Integer.parseInt(value.trim()), 1);
+    }
+
+    //服务端注册到注册中心的权重，加权负载均衡按权重比例分配请求
+    public static double getServerWeight() {
+        String value = properties.getProperty("server.weight");
+        return value == null ? DEFAULT_SERVER_WEIGHT : Double.parseDouble(value.trim());
+    }
+
+    //服务端启动后的预热时间（毫秒），预热期间加权负载均衡分给它的请求从很少逐渐增加到按权重分配，不大于0表示不预热
+    public static long getServerWarmup() {
+        String value = properties.getProperty("server.warmup");
+        return value == null ? DEFAULT_SERVER_WARMUP : Long.parseLong(value.trim());
+    }
+
+    //Netty服务端处理连接读写的线程数，0表示使用Netty的默认值（CPU核数的2倍）
+    public static int getNettyWorkerThreads() {
+        String value = properties.getProperty("netty.server.worker.threads");
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    //Netty客户端EventLoop的线程数，0表示使用Netty的默认值（CPU核数的2倍）
+    public static int getNettyClientThreads() {
+        String value = properties.getProperty("netty.client.threads");
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    //Netty连接的接收缓冲区大小（字节），0表示使用操作系统的默认值
+    public static int getNettyReceiveBufferSize() {
+        String value = properties.getProperty("netty.so.rcvbuf");
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    //Netty连接的发送缓冲区大小（字节），0表示使用操作系统的默认值
+    public static int getNettySendBufferSize() {
+        String value = properties.getProperty("netty.so.sndbuf");
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    //Netty连接待写出数据的低水位（字节），回落到低水位以下时通道重新变为可写
+    public static int getNettyWriteBufferLowWaterMark() {
+        String value = properties.getProperty("netty.write.buffer.low");
+        return value == null ? DEFAULT_NETTY_WRITE_BUFFER_LOW : Integer.parseInt(value.trim());
+    }
+
+    //Netty连接待写出数据的高水位（字节），超过高水位时通道变为不可写
+    public static int getNettyWriteBufferHighWaterMark() {
+        String value = properties.getProperty("netty.write.buffer.high");
+        return value == null ? DEFAULT_NETTY_WRITE_BUFFER_HIGH : Integer.parseInt(value.trim());
+    }
+
+    //Netty的内存分配器：pooled（默认）池化的分配器，unpooled 非池化的分配器
+    public static String getNettyAllocator() {
+        return properties.getProperty("netty.allocator", "pooled").trim();
+    }
+
+    //注册中心类型：nacos（默认）、local 基于本地文件的注册中心，不依赖外部服务，见LocalRegistry
+    public static String getRegistryType() {
+        return properties.getProperty("registry.type", "nacos").trim();
+    }
+
+    //本地注册中心的注册目录，同一台机器上的服务端、客户端使用同一个目录即可互相发现
+    public static String getLocalRegistryDir() {
+        String value = properties.getProperty("registry.local.dir");
+        return value == null ? System.getProperty("java.io.tmpdir") + "/mime-rpc-registry" : value.trim();
+    }
+
+    //获取服务端使用的服务注册
+    public static ServiceRegistry getServiceRegistry() {
+        String type = getRegistryType();
+        switch (type) {
+            case "nacos":
+                return SingletonFactory.getInstance(NacosServiceRegistry.class);
+            case "local":
+                return SingletonFactory.getInstance(LocalServiceRegistry.class);
+            default:
+                //配置写错时直接报错，而不是悄悄连接Nacos
+                throw new RpcException(RpcError.UNKNOWN_REGISTRY_TYPE, "registry.type=" + type + "，可选值: nacos、local");
+        }
+    }
+
+    //获取客户端使用的服务发现，配置了直连地址的服务不经过注册中心，见DirectServiceDiscovery
+    public static ServiceDiscovery getServiceDiscovery() {
+        return SingletonFactory.getInstance(DirectServiceDiscovery.class);
+    }
+
+    //获取服务的直连地址，格式为 host:port,host:port，没有配置时返回null
+    public static String getDirectEndpoints(String interfaceName) {
+        return properties.getProperty("client.direct." + interfaceName);
+    }
+
+    //获取注册中心的服务发现
+    public static ServiceDiscovery getRegistryDiscovery() {
+        String type = getRegistryType();
+        switch (type) {
+            case "nacos":
+                return SingletonFactory.getInstance(NacosServiceDiscovery.class);
+            case "local":
+                return SingletonFactory.getInstance(LocalServiceDiscovery.class);
+            default:
+                throw new RpcException(RpcError.UNKNOWN_REGISTRY_TYPE, "registry.type=" + type + "，可选值: nacos、local");
+        }
+    }
+
+    //获取客户端选择的负载均衡算法：random 随机、hash 一致性哈希、leastactive 最少活跃调用、p2c 响应时间最短的两次随机选择、
+    //weightedrandom 加权随机、weightedroundrobin 平滑加权轮询（两者都支持预热），默认轮询
     public static LoadBalancer getLoadBalancer(){
-        String value = properties.getProperty("client.loadbalancer");
+        String value = properties.getProperty("client.loadbalancer", "roundrobin").trim();
         switch (value) {
             case "random":
                 return SingletonFactory.getInstance(RandomLoadBalancer.class);
             case "hash":
                 return SingletonFactory.getInstance(ConsistentHashLoadBalance.class);
+            case "leastactive":
+                return SingletonFactory.getInstance(LeastActiveLoadBalancer.class);
+            case "p2c":
+                return SingletonFactory.getInstance(P2cEwmaLoadBalancer.class);
+            case "weightedrandom":
+                return SingletonFactory.getInstance(WeightedRandomLoadBalancer.class);
+            case "weightedroundrobin":
+                return SingletonFactory.getInstance(WeightedRoundRobinLoadBalancer.class);
             default:
                 return SingletonFactory.getInstance(RoundRobinLoadBalancer.class);
         }
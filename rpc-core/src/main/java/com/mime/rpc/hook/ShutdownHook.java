@@ -1,7 +1,7 @@
 package com.mime.rpc.hook;
 
 import com.mime.rpc.factory.ThreadPoolFactory;
-import com.mime.rpc.registry.nacos.util.NacosUtil;
+import com.mime.rpc.config.RpcConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +23,7 @@ public class ShutdownHook {
         //Runtime对象是JVM虚拟机的运行时环境，调用其addShutdownHook方法增加一个钩子函数，创建一个新线程调用clearRegistry方法完成注销工作。
         //这个钩子函数会在JVM关闭之前被调用。
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            NacosUtil.clearRegistry();
+            RpcConfig.getServiceRegistry().clearRegistry();
             ThreadPoolFactory.shutDownAll();
         }));
     }
@@ -0,0 +1,84 @@
+package com.mime.rpc.loadbalancer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端对每个服务端实例的调用统计，供按负载选择实例的负载均衡器使用
+ *   --active：已发出、尚未收到响应的请求数
+ *   --ewma：响应时间的指数加权移动平均，按距离上次采样的时间衰减（参考Finagle的Peak EWMA），
+ *     越久以前的样本权重越小，实例变慢时几个请求之内就能反映出来，恢复后也会逐渐回落
+ *     读取时同样按距离上次采样的时间衰减：因为一次很慢的响应（比如GC停顿）被冷落、分不到请求的实例，
+ *     代价会随时间降低，过一段时间后重新分到请求得到新的样本，不会一直被冷落
+ *   --新实例没有样本时以{@link #INITIAL_EWMA_NANOS}作为初始值，同样随时间衰减，
+ *     不会因为代价为0而在第一个响应回来之前吸走所有请求
+ * 请求失败（超时、连接断开）按不低于当前平均值两倍的耗时计入，避免快速失败的实例反而吸引更多请求
+ *
+ * 实例以服务快照中预先解析好的地址区分（见{@link com.mime.rpc.registry.ServiceSnapshot#statsOf}），
+ * 由客户端在发出请求和完成请求时记录，见NettyClient、SocketClient；查找时不需要拼接字符串，也不会产生新对象
+ */
+public final class EndpointStats {
+
+    //衰减的时间常数，距离上次采样经过这么久时旧的平均值只保留约37%的权重
+    private static final double DECAY_NANOS = 10_000_000_000d;
+    //没有样本时假定的响应时间
+    private static final double INITIAL_EWMA_NANOS = 10_000_000d;
+
+    private static final Map<InetSocketAddress, EndpointStats> statsMap = new ConcurrentHashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    //以下两个字段在同步块中更新，读取时不加锁
+    private volatile double ewmaNanos = INITIAL_EWMA_NANOS;
+    private volatile long lastSampleNanos = System.nanoTime();
+
+    private EndpointStats() {
+    }
+
+    public static EndpointStats of(InetSocketAddress address) {
+        EndpointStats stats = statsMap.get(address);
+        return stats != null ? stats : statsMap.computeIfAbsent(address, k -> new EndpointStats());
+    }
+
+    /**
+     * 发出请求前调用，返回请求开始的时间，请求结束时传给{@link #end(long, boolean)}
+     */
+    public long begin() {
+        active.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void end(long startNanos, boolean success) {
+        active.decrementAndGet();
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        synchronized (this) {
+            double ewma = ewmaNanos;
+            double sample = success ? elapsed : Math.max(elapsed, ewma * 2);
+            double weight = Math.exp(-(now - lastSampleNanos) / DECAY_NANOS);
+            lastSampleNanos = now;
+            //响应时间变大时立即采用新值，变小时再按权重平滑回落，尽快避开变慢的实例
+            ewmaNanos = sample > ewma ? sample : ewma * weight + sample * (1 - weight);
+        }
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * 当前的平均响应时间，按距离上次采样的时间衰减
+     */
+    public double getEwmaNanos() {
+        long elapsed = System.nanoTime() - lastSampleNanos;
+        return ewmaNanos * Math.exp(-Math.max(elapsed, 0) / DECAY_NANOS);
+    }
+
+    /**
+     * 选择实例时的代价：平均响应时间乘以排队的请求数，越小越好
+     */
+    public double cost() {
+        return getEwmaNanos() * (active.get() + 1);
+    }
+}
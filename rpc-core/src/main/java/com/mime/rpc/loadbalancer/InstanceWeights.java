@@ -0,0 +1,120 @@
+package com.mime.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.registry.InstanceMetadata;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组实例的权重，供加权负载均衡器使用
+ * 权重取Nacos实例的weight（可以在Nacos控制台修改，或由服务端的 server.weight 配置），
+ * 服务端注册时在元数据中写入注册时间和预热时间（见{@link InstanceMetadata}），
+ * 预热期间的权重按启动时长线性增长，刚启动、JIT还没有编译热点代码的实例只分到很少的请求（参考dubbo的warmup）
+ *
+ * 元数据在创建时就解析好，同一实例列表（同一个对象）只创建一次；所有实例都过了预热期后权重不再变化，直接使用缓存的结果
+ * 注册时间是服务端的时钟，客户端与服务端的时钟偏差会让预热提前或推迟结束
+ */
+final class InstanceWeights {
+
+    //预热刚开始时的权重占比，保证新实例也能分到少量请求
+    private static final double MIN_WARMUP_RATIO = 0.01;
+
+    //据此判断实例列表有无变化，快照中的实例列表不可变，变化时总是换成新的列表对象
+    final List<Instance> instances;
+    private final double[] weights;
+    private final long[] timestamps;
+    private final long[] warmups;
+    //所有实例预热结束的时间，之后直接使用weights
+    private final long warmupEnd;
+    private final double totalWeight;
+    //所有实例的权重相同
+    private final boolean sameWeights;
+
+    InstanceWeights(List<Instance> instances) {
+        this.instances = instances;
+        int size = instances.size();
+        weights = new double[size];
+        timestamps = new long[size];
+        warmups = new long[size];
+        long end = 0;
+        double total = 0;
+        boolean same = true;
+        for (int i = 0; i < size; i++) {
+            Instance instance = instances.get(i);
+            weights[i] = Math.max(instance.getWeight(), 0);
+            Map<String, String> metadata = instance.getMetadata();
+            timestamps[i] = parseLong(metadata.get(InstanceMetadata.TIMESTAMP_KEY));
+            warmups[i] = parseLong(metadata.get(InstanceMetadata.WARMUP_KEY));
+            if (timestamps[i] > 0 && warmups[i] > 0) {
+                end = Math.max(end, timestamps[i] + warmups[i]);
+            }
+            total += weights[i];
+            same &= weights[i] == weights[0];
+        }
+        this.warmupEnd = end;
+        this.totalWeight = total;
+        this.sameWeights = same;
+    }
+
+    int size() {
+        return weights.length;
+    }
+
+    /**
+     * 是否还有实例处于预热期，预热期内的权重需要用{@link #currentWeights(double[], long)}按时间计算
+     */
+    boolean isWarmingUp(long now) {
+        return now < warmupEnd;
+    }
+
+    /**
+     * 权重都相同、不需要加权时返回true，调用方可以直接均匀选择
+     */
+    boolean isUniform(long now) {
+        return sameWeights && !isWarmingUp(now);
+    }
+
+    /**
+     * 预热结束后的权重，直接返回内部数组，调用方不能修改
+     */
+    double[] weights() {
+        return weights;
+    }
+
+    double totalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * 计算各实例当前的权重写入current，返回权重之和
+     */
+    double currentWeights(double[] current, long now) {
+        if (!isWarmingUp(now)) {
+            System.arraycopy(weights, 0, current, 0, weights.length);
+            return totalWeight;
+        }
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double weight = weights[i];
+            long uptime = now - timestamps[i];
+            if (timestamps[i] > 0 && warmups[i] > 0 && uptime < warmups[i]) {
+                weight *= Math.max((double) Math.max(uptime, 0) / warmups[i], MIN_WARMUP_RATIO);
+            }
+            current[i] = weight;
+            total += weight;
+        }
+        return total;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mime.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.registry.ServiceSnapshot;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少活跃调用数负载均衡：选择客户端上尚未收到响应的请求最少的实例，最少的有多个时随机选择其中一个
+ * 处理得慢或者过载的实例请求会积压，活跃数变大后自然分到更少的请求
+ * 参照dubbo的LeastActiveLoadBalance，活跃数由{@link EndpointStats}统计
+ */
+public class LeastActiveLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        return doSelect(instances, null);
+    }
+
+    @Override
+    public Instance select(ServiceSnapshot snapshot, RpcRequest rpcRequest) {
+        return doSelect(snapshot.getInstances(), snapshot);
+    }
+
+    private Instance doSelect(List<Instance> instances, ServiceSnapshot snapshot) {
+        int size = instances.size();
+        if (size == 1) {
+            return instances.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Instance selected = null;
+        int leastActive = Integer.MAX_VALUE;
+        int leastCount = 0;
+        for (Instance instance : instances) {
+            int active = statsOf(instance, snapshot).getActive();
+            if (active < leastActive) {
+                leastActive = active;
+                leastCount = 1;
+                selected = instance;
+            } else if (active == leastActive && random.nextInt(++leastCount) == 0) {
+                //蓄水池抽样，活跃数相同的实例被选中的概率相等
+                selected = instance;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 经服务发现调用时从快照中取统计，只做一次按对象身份的查找；直接传入实例列表时才按地址查找
+     */
+    private static EndpointStats statsOf(Instance instance, ServiceSnapshot snapshot) {
+        return snapshot != null ? snapshot.statsOf(instance)
+                : EndpointStats.of(new InetSocketAddress(instance.getIp(), instance.getPort()));
+    }
+}
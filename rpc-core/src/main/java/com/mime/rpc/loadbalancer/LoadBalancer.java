@@ -2,6 +2,7 @@ package com.mime.rpc.loadbalancer;
 
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.registry.ServiceSnapshot;
 
 import java.util.List;
 
@@ -19,4 +20,12 @@ public interface LoadBalancer {
 
     Instance select(List<Instance> instances, RpcRequest rpcRequest);
 
+    /**
+     * 从服务快照中选择实例，服务发现调用的是这个方法
+     * 需要实例调用统计的负载均衡器覆盖此方法，从快照中直接取出统计，见{@link ServiceSnapshot#statsOf(Instance)}
+     */
+    default Instance select(ServiceSnapshot snapshot, RpcRequest rpcRequest) {
+        return select(snapshot.getInstances(), rpcRequest);
+    }
+
 }
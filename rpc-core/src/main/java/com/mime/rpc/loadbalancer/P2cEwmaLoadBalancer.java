@@ -0,0 +1,56 @@
+package com.mime.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.registry.ServiceSnapshot;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于响应时间的两次随机选择（power of two choices）负载均衡
+ * 随机取两个不同的实例，选择{@link EndpointStats#cost()}（响应时间的EWMA乘以活跃请求数）较小的一个
+ * 与遍历全部实例选最优相比，每次只看两个实例，开销与实例数无关，也不会让所有客户端同时涌向同一个"最优"实例，
+ * 而某个实例变慢时它在每次比较中都会输，分到的请求迅速减少，从而降低尾延迟
+ * 参考Finagle的P2C + Peak EWMA
+ */
+public class P2cEwmaLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        return doSelect(instances, null);
+    }
+
+    @Override
+    public Instance select(ServiceSnapshot snapshot, RpcRequest rpcRequest) {
+        return doSelect(snapshot.getInstances(), snapshot);
+    }
+
+    private Instance doSelect(List<Instance> instances, ServiceSnapshot snapshot) {
+        int size = instances.size();
+        if (size == 1) {
+            return instances.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        //第二个在其余的实例中选，保证两者不同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Instance a = instances.get(first);
+        Instance b = instances.get(second);
+        double costA = statsOf(a, snapshot).cost();
+        double costB = statsOf(b, snapshot).cost();
+        return costA <= costB ? a : b;
+    }
+
+    /**
+     * 经服务发现调用时从快照中取统计，只做一次按对象身份的查找；直接传入实例列表时才按地址查找
+     */
+    private static EndpointStats statsOf(Instance instance, ServiceSnapshot snapshot) {
+        return snapshot != null ? snapshot.statsOf(instance)
+                : EndpointStats.of(new InetSocketAddress(instance.getIp(), instance.getPort()));
+    }
+}
@@ -0,0 +1,56 @@
+package com.mime.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.entity.RpcRequest;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 加权随机负载均衡：每个实例被选中的概率与其（预热后的）权重成正比，见{@link InstanceWeights}
+ * 权重都为0时退化为均匀随机
+ */
+public class WeightedRandomLoadBalancer implements LoadBalancer {
+
+    private final ConcurrentHashMap<String, InstanceWeights> selectors = new ConcurrentHashMap<>();
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        String rpcServiceName = rpcRequest.getInterfaceName();
+        InstanceWeights weights = selectors.get(rpcServiceName);
+        //检查提供服务的所有实例有无变化
+        if (weights == null || weights.instances != instances) {
+            weights = new InstanceWeights(instances);
+            selectors.put(rpcServiceName, weights);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = instances.size();
+        long now = System.currentTimeMillis();
+        if (size == 1 || weights.isUniform(now)) {
+            return instances.get(random.nextInt(size));
+        }
+        double[] current;
+        double total;
+        if (weights.isWarmingUp(now)) {
+            current = new double[size];
+            total = weights.currentWeights(current, now);
+        } else {
+            //预热结束后权重不再变化，直接使用缓存的权重
+            current = weights.weights();
+            total = weights.totalWeight();
+        }
+        if (total <= 0) {
+            return instances.get(random.nextInt(size));
+        }
+        //在[0, total)中随机取一个点，落在哪个实例的权重区间就选择哪个实例
+        double offset = random.nextDouble(total);
+        for (int i = 0; i < size; i++) {
+            offset -= current[i];
+            if (offset < 0) {
+                return instances.get(i);
+            }
+        }
+        return instances.get(size - 1);
+    }
+}
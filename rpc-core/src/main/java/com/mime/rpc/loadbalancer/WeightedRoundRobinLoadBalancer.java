@@ -0,0 +1,66 @@
+package com.mime.rpc.loadbalancer;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.entity.RpcRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 平滑加权轮询负载均衡（参考nginx的smooth weighted round-robin）
+ * 每次选择时所有实例的当前值加上各自的权重，选出当前值最大的实例，再将它的当前值减去权重之和
+ * 例如权重为5、1、1的三个实例，七次选择的结果是 a a b a c a a，而不是 a a a a a b c，权重大的实例的请求也是均匀分散的
+ * 权重取预热后的权重，见{@link InstanceWeights}
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    private final ConcurrentHashMap<String, WeightedRoundRobinSelector> selectors = new ConcurrentHashMap<>();
+
+    @Override
+    public Instance select(List<Instance> instances, RpcRequest rpcRequest) {
+        String rpcServiceName = rpcRequest.getInterfaceName();
+        WeightedRoundRobinSelector selector = selectors.get(rpcServiceName);
+        //检查提供服务的所有实例有无变化，有变化时各实例的当前值从头开始
+        if (selector == null || selector.weights.instances != instances) {
+            selector = new WeightedRoundRobinSelector(new InstanceWeights(instances));
+            selectors.put(rpcServiceName, selector);
+        }
+        return instances.get(selector.next());
+    }
+
+    static class WeightedRoundRobinSelector {
+        private final InstanceWeights weights;
+        private final double[] currentWeights;
+        private final double[] effectiveWeights;
+
+        WeightedRoundRobinSelector(InstanceWeights weights) {
+            this.weights = weights;
+            this.currentWeights = new double[weights.size()];
+            this.effectiveWeights = new double[weights.size()];
+        }
+
+        //每次选择都要修改所有实例的当前值，加锁保证一次选择的修改是完整的
+        synchronized int next() {
+            int size = currentWeights.length;
+            if (size == 1) {
+                return 0;
+            }
+            double total = weights.currentWeights(effectiveWeights, System.currentTimeMillis());
+            if (total <= 0) {
+                //权重都为0时所有实例同等对待
+                Arrays.fill(effectiveWeights, 1);
+                total = size;
+            }
+            int selected = 0;
+            for (int i = 0; i < size; i++) {
+                currentWeights[i] += effectiveWeights[i];
+                if (currentWeights[i] > currentWeights[selected]) {
+                    selected = i;
+                }
+            }
+            currentWeights[selected] -= total;
+            return selected;
+        }
+    }
+}
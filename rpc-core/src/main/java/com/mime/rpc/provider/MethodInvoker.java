@@ -0,0 +1,69 @@
+package com.mime.rpc.provider;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * 服务方法的调用器
+ * 注册服务时为每个方法解析一次，得到已绑定服务对象、签名统一为(Object[])Object的MethodHandle，
+ * 调用时直接invokeExact，不再有每次请求的getMethod查找和Method.invoke的访问检查、参数拷贝
+ */
+public final class MethodInvoker {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final String serviceName;
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+    private final MethodHandle handle;
+
+    MethodInvoker(String serviceName, Object service, Method method) throws IllegalAccessException {
+        this.serviceName = serviceName;
+        this.methodName = method.getName();
+        this.paramTypes = method.getParameterTypes();
+        //实现类不是public时其public方法也需要放开访问检查
+        method.trySetAccessible();
+        this.handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(service)
+                //可变参数方法按固定参数个数调用，客户端传来的本来就是打包好的数组
+                .asFixedArity()
+                .asSpreader(Object[].class, paramTypes.length)
+                .asType(INVOKER_TYPE);
+    }
+
+    /**
+     * 调用服务方法，服务方法抛出的异常原样抛出，不会再包装为InvocationTargetException
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        return handle.invokeExact(args);
+    }
+
+    boolean matches(Class<?>[] types) {
+        if (types == null) {
+            return paramTypes.length == 0;
+        }
+        if (types.length != paramTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != paramTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public Class<?>[] getParamTypes() {
+        return paramTypes.clone();
+    }
+}
@@ -10,4 +10,9 @@ public interface ServiceProvider {
 
     Object getServiceProvider(String serviceName);
 
+    /**
+     * 根据方法名和参数类型获取服务方法的调用器，服务不存在时抛出异常，方法不存在时返回null
+     */
+    MethodInvoker getMethodInvoker(String serviceName, String methodName, Class<?>[] paramTypes);
+
 }
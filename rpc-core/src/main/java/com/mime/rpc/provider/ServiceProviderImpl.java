@@ -5,6 +5,10 @@ import com.mime.rpc.exception.RpcException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,24 +16,49 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * 默认的服务注册表，保存服务端本地服务
  * 用于服务端提供实现服务的对象
+ * 注册服务时同时为其所有public方法建立调用器表，请求到来时只需查表，不再反射查找方法
  */
 public class ServiceProviderImpl implements ServiceProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(ServiceProviderImpl.class);
 
+    private static final MethodInvoker[] EMPTY_INVOKERS = new MethodInvoker[0];
+
     //用来保存接口对象实例的哈希表
     private static final Map<String, Object> serviceMap = new ConcurrentHashMap<>();
     //记录已经注册过的接口信息
     private static final Set<String> registeredService = ConcurrentHashMap.newKeySet();
+    //服务名 -> 方法名 -> 同名的各个重载方法的调用器，每个服务的方法表建好后不再修改
+    private static final Map<String, Map<String, MethodInvoker[]>> invokerMap = new ConcurrentHashMap<>();
 
     @Override
     public <T> void addServiceProvider(T service, String serviceName) {
-        if (registeredService.contains(serviceName)) return;
-        registeredService.add(serviceName);
+        if (!registeredService.add(serviceName)) return;
+        invokerMap.put(serviceName, buildInvokers(service, serviceName));
         serviceMap.put(serviceName, service);
         logger.info("向接口: {} 注册服务: {}", service.getClass().getInterfaces(), serviceName);
     }
 
+    private static Map<String, MethodInvoker[]> buildInvokers(Object service, String serviceName) {
+        Map<String, List<MethodInvoker>> byName = new HashMap<>();
+        for (Method method : service.getClass().getMethods()) {
+            if (method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            MethodInvoker invoker;
+            try {
+                invoker = new MethodInvoker(serviceName, service, method);
+            } catch (IllegalAccessException | RuntimeException e) {
+                logger.warn("服务: {} 的方法: {} 无法访问，不对外提供", serviceName, method, e);
+                continue;
+            }
+            byName.computeIfAbsent(method.getName(), name -> new ArrayList<>()).add(invoker);
+        }
+        Map<String, MethodInvoker[]> methods = new HashMap<>();
+        byName.forEach((name, overloads) -> methods.put(name, overloads.toArray(EMPTY_INVOKERS)));
+        return methods;
+    }
+
     @Override
     public Object getServiceProvider(String serviceName) {
         Object service = serviceMap.get(serviceName);
@@ -38,4 +67,22 @@ public class ServiceProviderImpl implements ServiceProvider {
         }
         return service;
     }
+
+    @Override
+    public MethodInvoker getMethodInvoker(String serviceName, String methodName, Class<?>[] paramTypes) {
+        Map<String, MethodInvoker[]> methods = invokerMap.get(serviceName);
+        if (methods == null) {
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND);
+        }
+        MethodInvoker[] overloads = methods.get(methodName);
+        if (overloads == null) {
+            return null;
+        }
+        for (MethodInvoker invoker : overloads) {
+            if (invoker.matches(paramTypes)) {
+                return invoker;
+            }
+        }
+        return null;
+    }
 }
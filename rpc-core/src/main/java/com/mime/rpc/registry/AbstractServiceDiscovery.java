@@ -0,0 +1,105 @@
+package com.mime.rpc.registry;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.loadbalancer.LoadBalancer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 带本地缓存的服务发现
+ * 每个服务第一次被查找时拉取实例列表并订阅变化，之后注册中心推送变化时生成新版本的快照整体替换，
+ * 调用路径上只读取当前快照（一次volatile读），不访问注册中心，也不加锁，见{@link ServiceSnapshot}
+ */
+public abstract class AbstractServiceDiscovery implements ServiceDiscovery {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractServiceDiscovery.class);
+
+    //服务发现需要一种负载均衡策略
+    private static LoadBalancer loadBalancer;
+
+    static {
+        loadBalancer = RpcConfig.getLoadBalancer();
+    }
+
+    //服务名 -> 当前快照
+    private final ConcurrentHashMap<String, ServiceSnapshot> snapshots = new ConcurrentHashMap<>();
+    //服务名 -> 订阅时使用的锁
+    private final ConcurrentHashMap<String, Object> subscribeLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        ServiceSnapshot snapshot = getSnapshot(rpcRequest.getInterfaceName());
+        if (snapshot.isEmpty()) {
+            logger.error("找不到对应的服务: {}", rpcRequest.getInterfaceName());
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, rpcRequest.getInterfaceName());
+        }
+        //负载均衡选择
+        Instance instance = loadBalancer.select(snapshot, rpcRequest);
+        return snapshot.addressOf(instance);
+    }
+
+    /**
+     * 获取服务当前的快照，第一次获取时拉取实例并订阅变化
+     */
+    private ServiceSnapshot getSnapshot(String serviceName) {
+        ServiceSnapshot snapshot = snapshots.get(serviceName);
+        return snapshot != null ? snapshot : subscribe(serviceName);
+    }
+
+    //同一服务只订阅一次，订阅的过程需要访问注册中心，只在第一次查找时发生
+    //按服务加锁，不同服务的第一次查找互不等待
+    private ServiceSnapshot subscribe(String serviceName) {
+        synchronized (subscribeLocks.computeIfAbsent(serviceName, name -> new Object())) {
+            ServiceSnapshot snapshot = snapshots.get(serviceName);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            List<Instance> instances = doSubscribe(serviceName, changed -> update(serviceName, changed));
+            //拉取与订阅之间推送来的变化比拉取的结果新，已经有快照时不能用拉取的结果覆盖
+            ServiceSnapshot initial = new ServiceSnapshot(serviceName, 1, instances);
+            snapshot = snapshots.putIfAbsent(serviceName, initial);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            logger.info("服务: {} 订阅成功，实例数: {}", serviceName, instances.size());
+            return initial;
+        }
+    }
+
+    /**
+     * 用最新的实例列表替换服务的快照，实例没有变化时保留原快照
+     * 可以在注册中心的回调线程中调用
+     */
+    protected void update(String serviceName, List<Instance> instances) {
+        while (true) {
+            ServiceSnapshot current = snapshots.get(serviceName);
+            if (current != null && current.getInstances().equals(instances)) {
+                logger.debug("服务: {} 实例状态并没有改变", serviceName);
+                return;
+            }
+            //地址在替换之前解析好，读取方拿到的总是完整的快照
+            ServiceSnapshot next = new ServiceSnapshot(serviceName, current == null ? 1 : current.getVersion() + 1, instances);
+            boolean swapped = current == null
+                    ? snapshots.putIfAbsent(serviceName, next) == null
+                    : snapshots.replace(serviceName, current, next);
+            if (swapped) {
+                logger.info("服务: {} 实例有变化，版本: {} 实例数: {}", serviceName, next.getVersion(), instances.size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从注册中心拉取服务当前的实例列表，并订阅之后的变化，变化时调用listener
+     */
+    protected abstract List<Instance> doSubscribe(String serviceName, Consumer<List<Instance>> listener);
+}
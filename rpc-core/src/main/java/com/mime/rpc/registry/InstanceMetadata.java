@@ -0,0 +1,15 @@
+package com.mime.rpc.registry;
+
+/**
+ * 服务端注册实例时写入的元数据键，客户端的加权负载均衡据此计算实例的预热权重
+ */
+public final class InstanceMetadata {
+
+    //实例的注册时间（毫秒时间戳）
+    public static final String TIMESTAMP_KEY = "timestamp";
+    //实例的预热时间（毫秒）
+    public static final String WARMUP_KEY = "warmup";
+
+    private InstanceMetadata() {
+    }
+}
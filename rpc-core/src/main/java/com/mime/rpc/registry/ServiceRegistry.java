@@ -13,4 +13,9 @@ public interface ServiceRegistry {
      * @param inetSocketAddress 提供服务的地址
      */
     void register(String serviceName, InetSocketAddress inetSocketAddress);
+
+    /**
+     * 注销本机注册过的所有服务，服务端关闭时调用
+     */
+    void clearRegistry();
 }
@@ -0,0 +1,79 @@
+package com.mime.rpc.registry;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.loadbalancer.EndpointStats;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 某个服务在某一时刻的全部实例，不可变
+ * 注册中心推送实例变化时整体替换为新版本的快照，调用路径上只读取快照，不需要加锁
+ * 实例地址在生成快照时就解析好，选择实例后直接取出地址，不用每次请求都创建InetSocketAddress（可能触发DNS解析）
+ * 实例的调用统计同样在生成快照时取好，按负载选择实例的负载均衡器只需按对象身份查找一次
+ *
+ * 同一版本快照中的实例列表是同一个对象，负载均衡器以列表的identityHashCode判断实例是否有变化，见{@link com.mime.rpc.loadbalancer.LoadBalancer}
+ */
+public final class ServiceSnapshot {
+
+    private final String serviceName;
+    private final long version;
+    private final List<Instance> instances;
+    //按对象身份查找，不依赖Instance的hashCode，查找时也不会遍历实例的各个字段
+    private final Map<Instance, InetSocketAddress> addresses;
+    private final Map<Instance, EndpointStats> stats;
+
+    ServiceSnapshot(String serviceName, long version, List<Instance> instances) {
+        this.serviceName = serviceName;
+        this.version = version;
+        List<Instance> copy = new ArrayList<>(instances.size());
+        Map<Instance, InetSocketAddress> resolved = new IdentityHashMap<>(instances.size());
+        Map<Instance, EndpointStats> endpointStats = new IdentityHashMap<>(instances.size());
+        for (Instance instance : instances) {
+            copy.add(instance);
+            InetSocketAddress address = new InetSocketAddress(instance.getIp(), instance.getPort());
+            resolved.put(instance, address);
+            endpointStats.put(instance, EndpointStats.of(address));
+        }
+        this.instances = Collections.unmodifiableList(copy);
+        this.addresses = resolved;
+        this.stats = endpointStats;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * 快照版本，同一服务每次实例变化加一
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Instance> getInstances() {
+        return instances;
+    }
+
+    public boolean isEmpty() {
+        return instances.isEmpty();
+    }
+
+    /**
+     * 取出实例预先解析好的地址，实例不属于该快照时返回null
+     */
+    public InetSocketAddress addressOf(Instance instance) {
+        return addresses.get(instance);
+    }
+
+    /**
+     * 取出实例的调用统计，实例不属于该快照时返回null
+     */
+    public EndpointStats statsOf(Instance instance) {
+        return stats.get(instance);
+    }
+}
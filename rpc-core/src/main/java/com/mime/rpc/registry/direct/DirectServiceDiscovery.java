@@ -0,0 +1,102 @@
+package com.mime.rpc.registry.direct;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.registry.AbstractServiceDiscovery;
+import com.mime.rpc.registry.ServiceDiscovery;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 直连模式的服务发现，客户端默认使用的服务发现
+ * 配置了固定地址的服务（RpcConfig.properties中的 client.direct.接口全限定名=host:port,host:port，
+ * 或者{@link com.mime.rpc.remoting.transport.RpcClientProxy#getProxy(Class, InetSocketAddress...)}）直接在这些地址中做负载均衡，不经过注册中心；
+ * 其他服务交给注册中心的服务发现，注册中心在第一次查找这类服务时才创建，所有服务都直连时完全不会连接注册中心
+ */
+public class DirectServiceDiscovery extends AbstractServiceDiscovery {
+
+    private static final List<Instance> NOT_DIRECT = Collections.emptyList();
+
+    //服务名 -> 固定地址，没有配置固定地址的服务对应NOT_DIRECT，每个服务只读取一次配置
+    private final Map<String, List<Instance>> endpoints = new ConcurrentHashMap<>();
+
+    private volatile ServiceDiscovery registryDiscovery;
+
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        String serviceName = rpcRequest.getInterfaceName();
+        if (endpoints.computeIfAbsent(serviceName, DirectServiceDiscovery::configuredEndpoints) != NOT_DIRECT) {
+            return super.lookupService(rpcRequest);
+        }
+        return registryDiscovery().lookupService(rpcRequest);
+    }
+
+    /**
+     * 为服务指定固定地址，覆盖配置文件中的地址，已经在使用的服务立即切换到新的地址
+     */
+    public void setEndpoints(String serviceName, InetSocketAddress... addresses) {
+        if (addresses.length == 0) {
+            throw new IllegalArgumentException("直连地址不能为空: " + serviceName);
+        }
+        List<Instance> instances = new ArrayList<>(addresses.length);
+        for (InetSocketAddress address : addresses) {
+            instances.add(newInstance(serviceName, address.getHostString(), address.getPort()));
+        }
+        endpoints.put(serviceName, instances);
+        update(serviceName, instances);
+    }
+
+    @Override
+    protected List<Instance> doSubscribe(String serviceName, Consumer<List<Instance>> listener) {
+        //地址固定，不需要订阅变化，之后通过setEndpoints修改时直接替换快照
+        return endpoints.getOrDefault(serviceName, NOT_DIRECT);
+    }
+
+    private ServiceDiscovery registryDiscovery() {
+        ServiceDiscovery discovery = registryDiscovery;
+        if (discovery == null) {
+            discovery = RpcConfig.getRegistryDiscovery();
+            registryDiscovery = discovery;
+        }
+        return discovery;
+    }
+
+    //解析 host:port,host:port 格式的固定地址
+    private static List<Instance> configuredEndpoints(String serviceName) {
+        String value = RpcConfig.getDirectEndpoints(serviceName);
+        if (value == null || value.trim().isEmpty()) {
+            return NOT_DIRECT;
+        }
+        List<Instance> instances = new ArrayList<>();
+        for (String address : value.split(",")) {
+            address = address.trim();
+            int index = address.lastIndexOf(':');
+            if (index <= 0) {
+                throw new RpcException(RpcError.SERVICE_NOT_FOUND, "直连地址格式错误: " + serviceName + "=" + value);
+            }
+            try {
+                instances.add(newInstance(serviceName, address.substring(0, index), Integer.parseInt(address.substring(index + 1))));
+            } catch (NumberFormatException e) {
+                throw new RpcException(RpcError.SERVICE_NOT_FOUND, "直连地址格式错误: " + serviceName + "=" + value);
+            }
+        }
+        return instances;
+    }
+
+    private static Instance newInstance(String serviceName, String host, int port) {
+        Instance instance = new Instance();
+        instance.setServiceName(serviceName);
+        instance.setIp(host);
+        instance.setPort(port);
+        return instance;
+    }
+}
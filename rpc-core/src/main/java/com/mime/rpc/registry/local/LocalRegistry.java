@@ -0,0 +1,234 @@
+package com.mime.rpc.registry.local;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.registry.InstanceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 基于本地文件的注册中心，不依赖任何外部服务，用于在同一台机器上运行、测试多个服务端和客户端
+ * 注册目录（registry.local.dir，默认为临时目录下的mime-rpc-registry）下每个服务一个子目录，服务的每个实例一个文件，
+ * 文件名为 ip_port.instance，内容为实例的属性（ip、port、weight以及元数据），先写临时文件再原子地改名，读取方不会读到写了一半的文件
+ *
+ * 变化通知有两条途径：
+ *   --同一JVM内的注册、注销直接回调订阅者
+ *   --其他进程的变化由WatchService监听服务目录得到，Linux上底层是inotify，几乎没有延迟
+ * 两条途径可能对同一次变化各通知一次，订阅方需要自行判断实例列表是否真的有变化
+ *
+ * 注意：实例文件只在服务端正常关闭时删除（见{@link com.mime.rpc.hook.ShutdownHook}），进程被强制杀掉时会残留，需要手动清理注册目录
+ */
+public class LocalRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalRegistry.class);
+
+    private static final String INSTANCE_SUFFIX = ".instance";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String METADATA_PREFIX = "metadata.";
+
+    private static final Path ROOT = Paths.get(RpcConfig.getLocalRegistryDir());
+
+    //本JVM注册过的实例文件，关闭时删除
+    private static final Set<Path> registeredFiles = ConcurrentHashMap.newKeySet();
+    //服务名 -> 订阅者
+    private static final Map<String, List<Consumer<List<Instance>>>> listeners = new ConcurrentHashMap<>();
+    //被监听的服务目录 -> 服务名
+    private static final Map<WatchKey, String> watchedServices = new ConcurrentHashMap<>();
+
+    private static volatile WatchService watchService;
+
+    private LocalRegistry() {
+    }
+
+    public static void registerService(String serviceName, InetSocketAddress address) {
+        Path serviceDir = ROOT.resolve(serviceName);
+        String fileName = address.getHostString() + "_" + address.getPort();
+        Path instanceFile = serviceDir.resolve(fileName + INSTANCE_SUFFIX);
+        Properties properties = new Properties();
+        properties.setProperty("ip", address.getHostString());
+        properties.setProperty("port", String.valueOf(address.getPort()));
+        properties.setProperty("weight", String.valueOf(RpcConfig.getServerWeight()));
+        properties.setProperty(METADATA_PREFIX + InstanceMetadata.TIMESTAMP_KEY, String.valueOf(System.currentTimeMillis()));
+        properties.setProperty(METADATA_PREFIX + InstanceMetadata.WARMUP_KEY, String.valueOf(RpcConfig.getServerWarmup()));
+        try {
+            Files.createDirectories(serviceDir);
+            Path tempFile = serviceDir.resolve(fileName + TEMP_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                properties.store(out, serviceName);
+            }
+            Files.move(tempFile, instanceFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("注册服务时有错误发生:", e);
+            throw new RpcException(RpcError.REGISTER_SERVICE_FAILED);
+        }
+        registeredFiles.add(instanceFile);
+        notifyListeners(serviceName);
+    }
+
+    /**
+     * 读取服务的全部实例，按文件名排序，实例没有变化时两次读取的结果相等
+     */
+    public static List<Instance> getAllInstance(String serviceName) {
+        Path serviceDir = ROOT.resolve(serviceName);
+        if (!Files.isDirectory(serviceDir)) {
+            return Collections.emptyList();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(serviceDir, "*" + INSTANCE_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.error("读取服务 {} 的实例时有错误发生:", serviceName, e);
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName);
+        }
+        Collections.sort(files);
+        List<Instance> instances = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Instance instance = readInstance(serviceName, file);
+            if (instance != null) {
+                instances.add(instance);
+            }
+        }
+        return instances;
+    }
+
+    private static Instance readInstance(String serviceName, Path file) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            //列出目录之后实例刚好被注销
+            return null;
+        } catch (IOException e) {
+            logger.warn("读取实例文件 {} 失败", file, e);
+            return null;
+        }
+        Instance instance = new Instance();
+        instance.setServiceName(serviceName);
+        instance.setIp(properties.getProperty("ip"));
+        instance.setPort(Integer.parseInt(properties.getProperty("port")));
+        instance.setWeight(Double.parseDouble(properties.getProperty("weight", "1.0")));
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(METADATA_PREFIX)) {
+                instance.addMetadata(key.substring(METADATA_PREFIX.length()), properties.getProperty(key));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 订阅服务实例的变化，变化时以最新的实例列表回调listener
+     */
+    public static void subscribe(String serviceName, Consumer<List<Instance>> listener) {
+        listeners.computeIfAbsent(serviceName, name -> new CopyOnWriteArrayList<>()).add(listener);
+        Path serviceDir = ROOT.resolve(serviceName);
+        try {
+            //服务还没有实例时也先建好目录，之后其他进程注册的实例才能被监听到
+            Files.createDirectories(serviceDir);
+            WatchKey watchKey = serviceDir.register(watchService(),
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedServices.put(watchKey, serviceName);
+        } catch (IOException e) {
+            logger.error("监听服务 {} 时有错误发生，只能收到本进程内的变化:", serviceName, e);
+        }
+    }
+
+    private static WatchService watchService() throws IOException {
+        WatchService service = watchService;
+        if (service == null) {
+            synchronized (LocalRegistry.class) {
+                service = watchService;
+                if (service == null) {
+                    service = ROOT.getFileSystem().newWatchService();
+                    WatchService created = service;
+                    Thread watcher = new Thread(() -> watch(created), "local-registry-watcher");
+                    watcher.setDaemon(true);
+                    watcher.start();
+                    watchService = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    private static void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey watchKey = service.take();
+                //同一批事件只需要重新读取一次目录
+                watchKey.pollEvents();
+                String serviceName = watchedServices.get(watchKey);
+                if (serviceName != null) {
+                    try {
+                        notifyListeners(serviceName);
+                    } catch (RuntimeException e) {
+                        //读取注册目录失败只影响这一次通知，监听线程不能退出，否则之后其他进程的变化都收不到了
+                        logger.error("读取服务 {} 的实例变化时有错误发生:", serviceName, e);
+                    }
+                }
+                if (!watchKey.reset()) {
+                    watchedServices.remove(watchKey);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("注册目录监听线程退出");
+        }
+    }
+
+    private static void notifyListeners(String serviceName) {
+        List<Consumer<List<Instance>>> serviceListeners = listeners.get(serviceName);
+        if (serviceListeners == null || serviceListeners.isEmpty()) {
+            return;
+        }
+        //注册线程、监听线程、注销都会通知，按服务加锁（每个服务的订阅者列表只创建一次），读取目录与回调一起完成，
+        //先读到旧目录内容的通知不会在后读到新内容的通知之后才送达
+        synchronized (serviceListeners) {
+            List<Instance> instances = getAllInstance(serviceName);
+            for (Consumer<List<Instance>> listener : serviceListeners) {
+                try {
+                    listener.accept(instances);
+                } catch (RuntimeException e) {
+                    logger.error("通知服务 {} 的实例变化时有错误发生:", serviceName, e);
+                }
+            }
+        }
+    }
+
+    //服务端关闭时删除本JVM注册的实例文件
+    public static void clearRegistry() {
+        for (Path file : registeredFiles) {
+            try {
+                Files.deleteIfExists(file);
+                notifyListeners(file.getParent().getFileName().toString());
+            } catch (IOException e) {
+                logger.error("注销实例 {} 失败", file, e);
+            }
+        }
+        registeredFiles.clear();
+    }
+}
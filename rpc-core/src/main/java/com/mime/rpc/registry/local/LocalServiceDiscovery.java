@@ -0,0 +1,20 @@
+package com.mime.rpc.registry.local;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.mime.rpc.registry.AbstractServiceDiscovery;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 基于本地文件的服务发现，实例变化由同一JVM内的回调或者注册目录的监听推送，见{@link LocalRegistry}
+ */
+public class LocalServiceDiscovery extends AbstractServiceDiscovery {
+
+    @Override
+    protected List<Instance> doSubscribe(String serviceName, Consumer<List<Instance>> listener) {
+        //先订阅再读取，两者之间发生的变化不会漏掉
+        LocalRegistry.subscribe(serviceName, listener);
+        return LocalRegistry.getAllInstance(serviceName);
+    }
+}
@@ -0,0 +1,21 @@
+package com.mime.rpc.registry.local;
+
+import com.mime.rpc.registry.ServiceRegistry;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 基于本地文件的服务注册，见{@link LocalRegistry}
+ */
+public class LocalServiceRegistry implements ServiceRegistry {
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+        LocalRegistry.registerService(serviceName, inetSocketAddress);
+    }
+
+    @Override
+    public void clearRegistry() {
+        LocalRegistry.clearRegistry();
+    }
+}
@@ -1,46 +1,36 @@
 package com.mime.rpc.registry.nacos;
 
 import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
-import com.mime.rpc.config.RpcConfig;
-import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.enumeration.RpcError;
 import com.mime.rpc.exception.RpcException;
-import com.mime.rpc.loadbalancer.LoadBalancer;
-import com.mime.rpc.registry.ServiceDiscovery;
+import com.mime.rpc.registry.AbstractServiceDiscovery;
 import com.mime.rpc.registry.nacos.util.NacosUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.function.Consumer;
 
-
-public class NacosServiceDiscovery implements ServiceDiscovery {
+/**
+ * Nacos服务发现
+ * 实例列表缓存在本地的快照中，由Nacos推送的变化事件更新，见{@link AbstractServiceDiscovery}
+ */
+public class NacosServiceDiscovery extends AbstractServiceDiscovery {
 
     private static final Logger logger = LoggerFactory.getLogger(NacosServiceDiscovery.class);
 
-    //服务发现需要一种负载均衡策略
-    private static LoadBalancer loadBalancer;
-
-    static {
-        loadBalancer= RpcConfig.getLoadBalancer();
-    }
-
     @Override
-    public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+    protected List<Instance> doSubscribe(String serviceName, Consumer<List<Instance>> listener) {
         try {
-            List<Instance> instances = NacosUtil.getAllInstance(rpcRequest.getInterfaceName());
-            if(instances.size() == 0) {
-                logger.error("找不到对应的服务: " + rpcRequest.getInterfaceName());
-                throw new RpcException(RpcError.SERVICE_NOT_FOUND);
-            }
-            //负载均衡选择
-            Instance instance = loadBalancer.select(instances,rpcRequest);
-            return new InetSocketAddress(instance.getIp(), instance.getPort());
+            List<Instance> instances = NacosUtil.getAllInstance(serviceName);
+            //注册回调函数监听实例的变化
+            NacosUtil.subscribe(serviceName, event -> listener.accept(((NamingEvent) event).getInstances()));
+            return instances;
         } catch (NacosException e) {
             logger.error("获取服务时有错误发生:", e);
+            throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName);
         }
-        return null;
     }
 }
@@ -27,4 +27,9 @@ public class NacosServiceRegistry implements ServiceRegistry {
             throw new RpcException(RpcError.REGISTER_SERVICE_FAILED);
         }
     }
+
+    @Override
+    public void clearRegistry() {
+        NacosUtil.clearRegistry();
+    }
 }
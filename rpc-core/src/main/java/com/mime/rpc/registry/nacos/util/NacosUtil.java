@@ -3,13 +3,12 @@ package com.mime.rpc.registry.nacos.util;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
-import com.alibaba.nacos.api.naming.listener.Event;
 import com.alibaba.nacos.api.naming.listener.EventListener;
-import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.enumeration.RpcError;
 import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.registry.InstanceMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,23 +49,24 @@ public class NacosUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(NacosUtil.class);
 
-    //NamingService是nacos提供的管理服务注册、注销、发现的接口，唯一实现是NacosNamingService
-    private static final NamingService namingService;
-    //记录注册过的接口名称
-    private static final Set<String> serviceNames = new HashSet<>();
-    //使用缓存记录服务实例，不用每次请求的时候去拉取服务实例。服务实例注册回调函数来维系服务实例的变化
-    private static final Map<String, List<Instance>> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>();
-    private static InetSocketAddress address;
-
-    private static String serverAddress;
+    //记录注册过的接口名称，服务注册可能来自多个线程
+    private static final Set<String> serviceNames = ConcurrentHashMap.newKeySet();
+    private static volatile InetSocketAddress address;
 
+    /**
+     * NamingService是nacos提供的管理服务注册、注销、发现的接口，唯一实现是NacosNamingService
+     * 第一次真正用到Nacos时才连接（静态内部类由JVM保证只初始化一次），只引用到本类、或者选择了其他注册中心时都不需要Nacos
+     */
+    private static class NamingServiceHolder {
+        private static final NamingService namingService = getNacosNamingService();
+    }
 
-    static {
-        serverAddress = RpcConfig.getRpcAddress();
-        namingService = getNacosNamingService();
+    private static NamingService namingService() {
+        return NamingServiceHolder.namingService;
     }
 
     public static NamingService getNacosNamingService() {
+        String serverAddress = RpcConfig.getRpcAddress();
         try {
             //NamingFactory 根据ip地址创建NamingService实例的工厂
             //NacosFactory 也封装了获得NamingService实例的方法（实际任然是封装的NamingFactory方法）
@@ -81,72 +81,50 @@ public class NacosUtil {
     }
 
     public static void registerService(String serviceName, InetSocketAddress address) throws NacosException {
-        //注册服务
-        namingService.registerInstance(serviceName, address.getHostName(), address.getPort());
+        //注册服务，权重与注册时间、预热时间一起注册，供客户端的加权负载均衡使用
+        Instance instance = new Instance();
+        instance.setIp(address.getHostName());
+        instance.setPort(address.getPort());
+        instance.setWeight(RpcConfig.getServerWeight());
+        instance.addMetadata(InstanceMetadata.TIMESTAMP_KEY, String.valueOf(System.currentTimeMillis()));
+        instance.addMetadata(InstanceMetadata.WARMUP_KEY, String.valueOf(RpcConfig.getServerWarmup()));
+        namingService().registerInstance(serviceName, instance);
         NacosUtil.address = address;
         serviceNames.add(serviceName);
     }
 
+    /**
+     * 从Nacos拉取服务的全部实例
+     * 实例列表的本地缓存由服务发现维护（见{@link com.mime.rpc.registry.AbstractServiceDiscovery}），这里不再缓存
+     */
     public static List<Instance> getAllInstance(String serviceName) throws NacosException {
-        //查看内存中是否有此服务实例信息，有就直接返回
-        if(SERVICE_ADDRESS_MAP.containsKey(serviceName)){
-            return SERVICE_ADDRESS_MAP.get(serviceName);
-        }
-        List<Instance> instances = null;
-        try {
-            instances = namingService.getAllInstances(serviceName);
-            SERVICE_ADDRESS_MAP.put(serviceName,instances);
-            //注册回调函数监听变化
-            registerWatcher(serviceName);
-        } catch (Exception e) {
-            logger.info("---获取服务实例失败---:"+serviceName);
-        }
-        return instances;
+        return namingService().getAllInstances(serviceName);
     }
 
     /**
-     * 注册回调函数监听实例的变化并修改内存中的服务实例状态
+     * 注册回调函数监听实例的变化
      * 通过源码可知，在第一次执行subscribe方法时就会触发一次onEvent()方法（之后只有提供服务的所有实例发生变化【服务实例增加、减少、信息被修改】以后才会触发onEvent()方法）
-     * 触发事件NamingEvent（Event唯一实现类），但是服务器所有实例并没有变化
-     * 所以需要判断这个时候实例的hashcode值是否一样，一样则说明没被修改
+     * 触发事件NamingEvent（Event唯一实现类），但是服务器所有实例并没有变化，所以回调中需要判断实例列表是否真的有变化
      *
      * 源码（类EventDispatcher）是将所有改变了的服务实例放入BlockingQueue<ServiceInfo> changedServices阻塞队列中，特殊的是第一次调用subscribe（）方法的时候也会把对应的ServiceInfo加入阻塞队列
      * 然后由这个类开辟的一个线程就会一直处理阻塞队列中的任务（加入的ServiceInfo），并且调用已存储的该服务实例的回调函数onEvent（）
      * 这个存放回调函数的集合申明ConcurrentMap<String, List<EventListener>> observerMap，当调用subscribe（）方法订阅时最终就会将此回调函数加入实例对应的List集合中
      */
-    private static void registerWatcher(String serviceName) throws NacosException {
-        namingService.subscribe(serviceName, new EventListener() {
-            @Override
-            public void onEvent(Event event) {
-                List<Instance> instances = ((NamingEvent)event).getInstances();
-                if(instances.size() == 0){
-                    logger.info("------服务下线------:"+serviceName);
-                    SERVICE_ADDRESS_MAP.remove(serviceName);
-                }else if(instances.size()==SERVICE_ADDRESS_MAP.get(serviceName).size()){
-                    if(instances.hashCode()==SERVICE_ADDRESS_MAP.get(serviceName).hashCode()){
-                        logger.info("实例状态并没有改变");
-                    }else {
-                        logger.info("------服务实例有变化-------"+serviceName);
-                        SERVICE_ADDRESS_MAP.put(serviceName,instances);
-                    }
-                }else {
-                    logger.info("------服务实例有变化-------"+serviceName);
-                    SERVICE_ADDRESS_MAP.put(serviceName,instances);
-                }
-            }
-        });
+    public static void subscribe(String serviceName, EventListener listener) throws NacosException {
+        namingService().subscribe(serviceName, listener);
     }
 
 
     //当服务器关闭的同时注销nacos中已注册存在的数据，实际上实例在不发送心跳包后会被服务器标记为不健康继而被移除
     public static void clearRegistry() {
+        InetSocketAddress address = NacosUtil.address;
         if(!serviceNames.isEmpty() && address != null) {
             String host = address.getHostName();
             int port = address.getPort();
             for (String serviceName : serviceNames) {
                 try {
                     //遍历注销
-                    namingService.deregisterInstance(serviceName, host, port);
+                    namingService().deregisterInstance(serviceName, host, port);
                 } catch (NacosException e) {
                     logger.error("注销服务 {} 失败", serviceName, e);
                 }
@@ -15,17 +15,17 @@ import org.slf4j.LoggerFactory;
 import java.util.List;
 /**
  * custom protocol decoder
- *   0     1     2     3     4     5     6     7     8      9     10   11    12     13    14    15    16
- *   +-----+-----+-----+-----+-----+----+----+----+------+-----+-----+-----+-----+-----+-----+-----+-----+
- *   |   magic   code        |          messageType       | serializerCode        |       full length     |
- *   +-----------------------+--------+-------------------+-----------+--------+-----------+------------+
- *   |                                                                                                       |
- *   |                                         body                                                          |
- *   |                                                                                                       |
- *   |                                        ... ...                                                        |
- *   +-------------------------------------------------------------------------------------------------------+
+ *   0     1     2     3     4     5     6     7     8     9     10    11    12        ...        19    20    21    22    23
+ *   +-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----------------------+-----+-----+-----+-----+
+ *   |      magic code       |      messageType      |    serializerCode     |       requestId       |      full length      |
+ *   +-----------------------+-----------------------+-----------------------+-----------------------+-----------------------+
+ *   |                                                                                                                       |
+ *   |                                                  body                                                                 |
+ *   |                                                                                                                       |
+ *   |                                                 ... ...                                                               |
+ *   +-----------------------------------------------------------------------------------------------------------------------+
  * 4B  magic code（魔数）  4B messageType（数据包类型） 4B  serializerCode（序列化算法）
- * 4B full length（消息长度）  body（object类型数据）
+ * 8B  requestId（请求号，连接内单调递增）  4B full length（消息长度）  body（object类型数据）
  * <p>
  */
 /**
@@ -69,6 +69,7 @@ public class CommonDecoder extends ReplayingDecoder<Void> {
             throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
         }
         int serializerCode = in.readInt();
+        long requestId = in.readLong();
         //找到该数据包序列化的形式
         CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
         if (serializer == null) {
@@ -77,10 +78,16 @@ public class CommonDecoder extends ReplayingDecoder<Void> {
         }
         //根据自定义协议内容读入数据
         int length = in.readInt();
-        byte[] bytes = new byte[length];
-        in.readBytes(bytes);
+        //readSlice只是原缓冲区的视图，数据不足时同样会触发重放，不会拷贝出中间byte[]
+        ByteBuf body = in.readSlice(length);
         //反序列化
-        Object obj = serializer.deserialize(bytes, packageClass);
+        Object obj = serializer.deserialize(body, packageClass);
+        //请求号只在帧头中传输，反序列化后再填回对象
+        if (obj instanceof RpcRequest) {
+            ((RpcRequest) obj).setRequestId(requestId);
+        } else {
+            ((RpcResponse<?>) obj).setRequestId(requestId);
+        }
         out.add(obj);
     }
 }
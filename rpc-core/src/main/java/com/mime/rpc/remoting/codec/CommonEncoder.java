@@ -1,6 +1,7 @@
 package com.mime.rpc.remoting.codec;
 
 import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.entity.RpcResponse;
 import com.mime.rpc.enumeration.PackageType;
 import com.mime.rpc.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
@@ -24,16 +25,23 @@ public class CommonEncoder extends MessageToByteEncoder<Object> {
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
         out.writeInt(MAGIC_NUMBER);
+        long requestId;
         if (msg instanceof RpcRequest) {
             out.writeInt(PackageType.REQUEST_PACK.getCode());
+            requestId = ((RpcRequest) msg).getRequestId();
         } else {
             out.writeInt(PackageType.RESPONSE_PACK.getCode());
+            requestId = ((RpcResponse<?>) msg).getRequestId();
         }
         out.writeInt(serializer.getCode());
+        //请求号写在帧头中，消息体里不再重复携带
+        out.writeLong(requestId);
+        //先预留4字节的长度字段，消息体直接序列化进out后再回填
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
         //依据客户端/服务端传入的序列化方式进行序列化
-        byte[] bytes = serializer.serialize(msg);
+        serializer.serialize(msg, out);
         //写入的长度是实体数据的长度而非总长度
-        out.writeInt(bytes.length);
-        out.writeBytes(bytes);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
     }
 }
@@ -11,8 +11,6 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Arrays;
-
 @Slf4j
 public class MessageDecoder extends LengthFieldBasedFrameDecoder {
 
@@ -23,11 +21,11 @@ public class MessageDecoder extends LengthFieldBasedFrameDecoder {
     private final static int MAGIC_NUMBER = 0x77466258;
 
     public MessageDecoder() {
-        //lengthFieldOffset:魔数为4B，数据包类型4B，序列化选择算法4B，然后是全长。所以长度起始值为12
+        //lengthFieldOffset:魔数为4B，数据包类型4B，序列化选择算法4B，请求号8B，然后是全长。所以长度起始值为20
         //lengthFieldLength:表示长度的位长度是4B。所以值为4(注意这个长度是整个数据包的长度，而非除去了魔数、请求类型等等的长度)，而这样会影响第三个字段
-        //lengthAdjustment:如果这个全长是整个数据包长度，那么这里就要调整位-12。如果仅仅是剩下数据实体的长度就不需要调整添0即刻
+        //lengthAdjustment:如果这个全长是整个数据包长度，那么这里就要调整位-20。如果仅仅是剩下数据实体的长度就不需要调整添0即刻
         //initialBytesToStrip:我们将手动检查魔数，因此不要删除任何字节。所以值为0
-        this(MAX_FRAME_LENGTH, 12, 4, 0, 0);
+        this(MAX_FRAME_LENGTH, 20, 4, 0, 0);
     }
 
     /**
@@ -44,14 +42,27 @@ public class MessageDecoder extends LengthFieldBasedFrameDecoder {
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
-        int magic = in.readInt();
+        //先交由父类按长度字段切出完整的一帧，返回的是累积缓冲区的retainedSlice，并不拷贝数据
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return decodeFrame(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private Object decodeFrame(ByteBuf frame) {
+        int magic = frame.readInt();
         //校验魔数
         if (magic != MAGIC_NUMBER) {
             log.error("不识别的协议包: {}", magic);
             throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
         }
         //packageCode 该数据包类型（请求/响应）
-        int packageCode = in.readInt();
+        int packageCode = frame.readInt();
         Class<?> packageClass;
         if (packageCode == PackageType.REQUEST_PACK.getCode()) {
             packageClass = RpcRequest.class;
@@ -61,18 +72,24 @@ public class MessageDecoder extends LengthFieldBasedFrameDecoder {
             log.error("不识别的数据包: {}", packageCode);
             throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
         }
-        int serializerCode = in.readInt();
+        int serializerCode = frame.readInt();
+        long requestId = frame.readLong();
         //找到该数据包序列化的形式
         CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
         if (serializer == null) {
             log.error("不识别的反序列化器: {}", serializerCode);
             throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
         }
-        //根据自定义协议内容读入数据
-        int length = in.readInt();
-        byte[] bytes = new byte[length];
-        in.readBytes(bytes);
+        //根据自定义协议内容读入数据，消息体直接以切片形式交给序列化器，不再拷贝到中间byte[]
+        int length = frame.readInt();
         //反序列化
-        return serializer.deserialize(bytes, packageClass);
+        Object obj = serializer.deserialize(frame.readSlice(length), packageClass);
+        //请求号只在帧头中传输，反序列化后再填回对象
+        if (obj instanceof RpcRequest) {
+            ((RpcRequest) obj).setRequestId(requestId);
+        } else {
+            ((RpcResponse<?>) obj).setRequestId(requestId);
+        }
+        return obj;
     }
 }
@@ -0,0 +1,14 @@
+package com.mime.rpc.remoting.dispatcher;
+
+import com.mime.rpc.entity.RpcRequest;
+
+/**
+ * 直接在当前（IO）线程中执行，没有线程切换的开销，只适合耗时很短且不会阻塞的服务方法
+ */
+public class DirectDispatcher implements Dispatcher {
+
+    @Override
+    public void dispatch(RpcRequest rpcRequest, Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,22 @@
+package com.mime.rpc.remoting.dispatcher;
+
+import com.mime.rpc.entity.RpcRequest;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 服务端请求派发策略，决定业务方法在哪个线程中执行
+ * 业务方法是用户代码，执行时间不可控，放在IO线程中执行会拖慢同一EventLoop上的所有连接
+ */
+public interface Dispatcher {
+
+    /**
+     * 派发一个请求的处理任务
+     *
+     * @param rpcRequest 请求，可以据此选择执行的线程池
+     * @param task       处理请求并写回响应的任务
+     * @throws RejectedExecutionException 处理能力已饱和，调用方应向客户端返回繁忙响应
+     */
+    void dispatch(RpcRequest rpcRequest, Runnable task);
+
+}
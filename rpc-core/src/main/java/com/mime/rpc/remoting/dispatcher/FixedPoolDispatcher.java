@@ -0,0 +1,25 @@
+package com.mime.rpc.remoting.dispatcher;
+
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.factory.ThreadPoolFactory;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 所有服务共享一个固定大小、有界队列的业务线程池
+ */
+public class FixedPoolDispatcher implements Dispatcher {
+
+    private final ExecutorService executor;
+
+    public FixedPoolDispatcher() {
+        executor = ThreadPoolFactory.createBoundedThreadPool("rpc-business",
+                RpcConfig.getDispatcherThreads(null), RpcConfig.getDispatcherQueueCapacity(), false);
+    }
+
+    @Override
+    public void dispatch(RpcRequest rpcRequest, Runnable task) {
+        executor.execute(task);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mime.rpc.remoting.dispatcher;
+
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.factory.ThreadPoolFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 每个服务使用独立的线程池，某个服务变慢或被打满时只会拒绝该服务自己的请求，不影响其他服务
+ * 线程数可以用 server.dispatcher.threads.接口全限定名 为单个服务单独配置
+ */
+public class IsolatedPoolDispatcher implements Dispatcher {
+
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    @Override
+    public void dispatch(RpcRequest rpcRequest, Runnable task) {
+        String serviceName = rpcRequest.getInterfaceName();
+        ExecutorService executor = executors.get(serviceName);
+        if (executor == null) {
+            executor = executors.computeIfAbsent(serviceName, name -> ThreadPoolFactory.createBoundedThreadPool("rpc-service-" + name,
+                    RpcConfig.getDispatcherThreads(name), RpcConfig.getDispatcherQueueCapacity(), false));
+        }
+        executor.execute(task);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mime.rpc.remoting.dispatcher;
+
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.factory.SingletonFactory;
+import com.mime.rpc.factory.ThreadPoolFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 每个请求一个虚拟线程（JDK 21及以上），阻塞式的业务代码也不会占用平台线程
+ * 虚拟线程本身没有数量上限，用信号量限制同时执行的请求数（server.dispatcher.max.concurrent），超过时拒绝
+ * 当前JDK不支持虚拟线程时退化为共享的业务线程池
+ */
+public class VirtualThreadDispatcher implements Dispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadDispatcher.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Dispatcher fallback;
+
+    public VirtualThreadDispatcher() {
+        executor = ThreadPoolFactory.createVirtualThreadExecutor("rpc-virtual");
+        if (executor == null) {
+            logger.warn("虚拟线程不可用，改用共享业务线程池");
+            fallback = SingletonFactory.getInstance(FixedPoolDispatcher.class);
+            permits = null;
+        } else {
+            fallback = null;
+            permits = new Semaphore(RpcConfig.getDispatcherMaxConcurrency());
+        }
+    }
+
+    @Override
+    public void dispatch(RpcRequest rpcRequest, Runnable task) {
+        if (fallback != null) {
+            fallback.dispatch(rpcRequest, task);
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("同时执行的请求数已达上限");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mime.rpc.remoting.handler;
+
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.provider.MethodInvoker;
+import com.mime.rpc.provider.ServiceProvider;
+import io.netty.util.collection.IntObjectHashMap;
+
+/**
+ * 单个连接上客户端方法编号与服务方法调用器的对应关系
+ * 客户端在一条连接上第一次调用某个方法时发送完整的请求并带上方法编号，之后只发送编号和参数，见{@link RpcRequest#getMethodId()}
+ * 同一连接上的请求按到达顺序解析，编号的登记总是先于使用，所以只能在连接的IO线程中按顺序调用，不需要加锁
+ */
+public class MethodIdTable {
+
+    private final ServiceProvider serviceProvider;
+    private final IntObjectHashMap<MethodInvoker> invokers = new IntObjectHashMap<>();
+
+    MethodIdTable(ServiceProvider serviceProvider) {
+        this.serviceProvider = serviceProvider;
+    }
+
+    /**
+     * 解析请求要调用的方法，服务或方法不存在、编号未登记时返回null
+     */
+    public MethodInvoker resolve(RpcRequest rpcRequest) {
+        int methodId = rpcRequest.getMethodId();
+        if (rpcRequest.getInterfaceName() == null) {
+            return methodId > 0 ? invokers.get(methodId) : null;
+        }
+        MethodInvoker invoker;
+        try {
+            invoker = serviceProvider.getMethodInvoker(
+                    rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        } catch (RpcException e) {
+            //服务不存在
+            return null;
+        }
+        if (invoker != null && methodId > 0) {
+            invokers.put(methodId, invoker);
+        }
+        return invoker;
+    }
+}
@@ -3,13 +3,15 @@ package com.mime.rpc.remoting.handler;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
 import com.mime.rpc.enumeration.ResponseCode;
+import com.mime.rpc.provider.MethodInvoker;
 import com.mime.rpc.provider.ServiceProvider;
 import com.mime.rpc.provider.ServiceProviderImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 进行过程调用的处理器--实际处理方法的调用
@@ -23,27 +25,72 @@ public class RequestHandler {
         serviceProvider = new ServiceProviderImpl();
     }
 
+    /**
+     * 同步处理请求，服务方法返回CompletableFuture时会等待其完成
+     */
     public RpcResponse<Object> handle(RpcRequest rpcRequest) {
-        Object service = serviceProvider.getServiceProvider(rpcRequest.getInterfaceName());
-        return invokeTargetMethod(rpcRequest, service);
+        return handleAsync(rpcRequest).join();
+    }
+
+    /**
+     * 异步处理请求
+     * 服务方法返回CompletionStage时不占用当前线程等待，结果在其完成时封装为响应，其余情况返回已完成的future
+     */
+    public CompletableFuture<RpcResponse<Object>> handleAsync(RpcRequest rpcRequest) {
+        //调用器在注册服务时已经建好，这里只需查表
+        MethodInvoker invoker = serviceProvider.getMethodInvoker(
+                rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        return handleAsync(rpcRequest, invoker);
+    }
+
+    /**
+     * 用已经解析好的调用器异步处理请求，invoker为null表示未找到要调用的方法
+     */
+    public CompletableFuture<RpcResponse<Object>> handleAsync(RpcRequest rpcRequest, MethodInvoker invoker) {
+        if (invoker == null) {
+            logger.error("服务:{} 未找到方法:{} 方法编号:{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getMethodId());
+            return CompletableFuture.completedFuture(RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId()));
+        }
+        return invokeTargetMethod(rpcRequest, invoker);
+    }
+
+    /**
+     * 为一条连接创建方法编号表，见{@link MethodIdTable}
+     */
+    public MethodIdTable newMethodIdTable() {
+        return new MethodIdTable(serviceProvider);
     }
 
     //直接在调用处构造成功失败结果
-    private RpcResponse<Object> invokeTargetMethod(RpcRequest rpcRequest, Object service) {
+    private CompletableFuture<RpcResponse<Object>> invokeTargetMethod(RpcRequest rpcRequest, MethodInvoker invoker) {
         Object result;
-        RpcResponse<Object> response;
         try {
-            //根据方法名及方法参数类型获得要调用的方法
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            //反射调用该方法
-            result = method.invoke(service, rpcRequest.getParameters());
-            //封装结果返回给客户端
-            response = RpcResponse.success(result, rpcRequest.getRequestId());
-            logger.info("服务:{} 成功调用方法:{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            //异常抛出调用失败的结果
-            return RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId());
+            result = invoker.invoke(rpcRequest.getParameters());
+        } catch (Throwable e) {
+            //服务方法本身抛出的业务异常，把异常信息带回给客户端
+            logger.error("服务:{} 调用方法:{} 抛出异常", invoker.getServiceName(), invoker.getMethodName(), e);
+            return CompletableFuture.completedFuture(RpcResponse.fail(ResponseCode.FAIL, describe(e), rpcRequest.getRequestId()));
+        }
+        if (result instanceof CompletionStage) {
+            //异步服务方法，等其完成后再封装结果返回给客户端
+            return ((CompletionStage<?>) result).handle((value, throwable) -> {
+                if (throwable != null) {
+                    logger.error("服务:{} 调用方法:{} 异步执行失败", invoker.getServiceName(), invoker.getMethodName(), throwable);
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    return RpcResponse.<Object>fail(ResponseCode.FAIL, describe(cause), rpcRequest.getRequestId());
+                }
+                logger.info("服务:{} 成功调用方法:{}", invoker.getServiceName(), invoker.getMethodName());
+                return RpcResponse.<Object>success(value, rpcRequest.getRequestId());
+            }).toCompletableFuture();
         }
-        return response;
+        logger.info("服务:{} 成功调用方法:{}", invoker.getServiceName(), invoker.getMethodName());
+        //封装结果返回给客户端
+        return CompletableFuture.completedFuture(RpcResponse.success(result, rpcRequest.getRequestId()));
+    }
+
+    //失败信息只带异常类型和描述，异常对象本身不一定能被客户端反序列化
+    private static String describe(Throwable e) {
+        return ResponseCode.FAIL.getMessage() + ": " + e;
     }
 }
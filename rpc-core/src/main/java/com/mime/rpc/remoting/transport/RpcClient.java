@@ -1,6 +1,7 @@
 package com.mime.rpc.remoting.transport;
 
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.serializer.CommonSerializer;
 
@@ -11,6 +12,16 @@ public interface RpcClient {
 
     int DEFAULT_SERIALIZER = CommonSerializer.KRYO_SERIALIZER;
 
-    Object sendRequest(RpcRequest rpcRequest);
+    /**
+     * 使用配置文件中该方法（或全局）的超时时间发送请求
+     */
+    default Object sendRequest(RpcRequest rpcRequest) {
+        return sendRequest(rpcRequest, RpcConfig.getRequestTimeout(rpcRequest.getInterfaceName(), rpcRequest.getMethodName()));
+    }
+
+    /**
+     * @param timeoutMillis 超时时间，超时后请求以失败结束，不大于0表示不超时
+     */
+    Object sendRequest(RpcRequest rpcRequest, long timeoutMillis);
 
 }
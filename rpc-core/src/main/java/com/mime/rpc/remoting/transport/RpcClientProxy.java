@@ -1,7 +1,11 @@
 package com.mime.rpc.remoting.transport;
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
+import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.factory.SingletonFactory;
+import com.mime.rpc.registry.direct.DirectServiceDiscovery;
 import com.mime.rpc.remoting.transport.netty.client.NettyClient;
 import com.mime.rpc.remoting.transport.socket.client.SocketClient;
 import com.mime.rpc.util.RpcMessageChecker;
@@ -11,18 +15,36 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.net.InetSocketAddress;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * RPC客户端动态代理
+ * 返回值为CompletableFuture的方法以异步方式调用：发出请求后立即返回future，不阻塞调用线程，
+ * 响应到达（或超时、连接断开）时由Netty的EventLoop线程完成该future，因此在其上注册的非async回调不能执行阻塞操作
+ * 除了在服务接口中直接声明CompletableFuture返回值外，还可以为同步接口Xxx编写一个异步的伴生接口XxxAsync：
+ * 方法名、参数与Xxx一致，返回值改为CompletableFuture<原返回值>，调用时请求的仍是服务端的Xxx服务
  */
 public class RpcClientProxy implements InvocationHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(RpcClientProxy.class);
 
+    //异步伴生接口名的后缀
+    private static final String ASYNC_SUFFIX = "Async";
+
+    //客户端内全局的方法编号，从1开始分配，同一个方法在所有代理、所有连接上使用同一个编号
+    private static final AtomicInteger METHOD_ID_GENERATOR = new AtomicInteger();
+    private static final Map<Method, Integer> METHOD_IDS = new ConcurrentHashMap<>();
+
     private final RpcClient client;
 
+    //每个方法的服务名、超时时间、是否异步只需解析一次
+    private final Map<Method, MethodMetadata> methodMetadataCache = new ConcurrentHashMap<>();
+
     public RpcClientProxy(RpcClient client) {
         this.client = client;
     }
@@ -32,29 +54,111 @@ public class RpcClientProxy implements InvocationHandler {
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
     }
 
+    /**
+     * 以直连模式获取代理，请求直接在给定的地址中负载均衡，不经过注册中心
+     * 地址按服务名记录在客户端全局，同一服务的其他代理也会使用这些地址
+     */
+    public <T> T getProxy(Class<T> clazz, InetSocketAddress... endpoints) {
+        SingletonFactory.getInstance(DirectServiceDiscovery.class)
+                .setEndpoints(MethodMetadata.resolveServiceName(clazz), endpoints);
+        return getProxy(clazz);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
         logger.info("调用方法: {}#{}", method.getDeclaringClass().getName(), method.getName());
-        //requestId随机生成 非心跳包
-        RpcRequest rpcRequest = new RpcRequest(UUID.randomUUID().toString(), method.getDeclaringClass().getName(),
-                method.getName(), args, method.getParameterTypes(), false);
+        MethodMetadata metadata = methodMetadataCache.computeIfAbsent(method, MethodMetadata::new);
+        //requestId由客户端选定连接后在连接内分配 非心跳包
+        RpcRequest rpcRequest = new RpcRequest(0L, metadata.serviceName,
+                method.getName(), args, method.getParameterTypes(), false, metadata.methodId);
+        if (metadata.async) {
+            return invokeAsync(rpcRequest, metadata.timeoutMillis);
+        }
         RpcResponse<Object> rpcResponse = null;
         if (client instanceof NettyClient) {
             try {
-                CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) client.sendRequest(rpcRequest);
-                //阻塞式接收回调结果
+                CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) client.sendRequest(rpcRequest, metadata.timeoutMillis);
+                //阻塞式接收回调结果，超时由客户端的时间轮负责，到期后future以异常结束
                 rpcResponse = completableFuture.get();
-            } catch (Exception e) {
-                logger.error("方法调用请求发送失败", e);
-                return null;
+            } catch (ExecutionException e) {
+                logger.error("方法调用失败", e.getCause());
+                if (e.getCause() instanceof RpcException) {
+                    throw (RpcException) e.getCause();
+                }
+                throw new RpcException("方法调用失败", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RpcException("方法调用被中断", e);
             }
         }
         if (client instanceof SocketClient) {
-            rpcResponse = (RpcResponse<Object>) client.sendRequest(rpcRequest);
+            rpcResponse = (RpcResponse<Object>) client.sendRequest(rpcRequest, metadata.timeoutMillis);
         }
         //校验调用结果
         RpcMessageChecker.check(rpcRequest, rpcResponse);
         return rpcResponse.getData();
     }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> invokeAsync(RpcRequest rpcRequest, long timeoutMillis) {
+        if (client instanceof NettyClient) {
+            CompletableFuture<RpcResponse<Object>> completableFuture;
+            try {
+                completableFuture = (CompletableFuture<RpcResponse<Object>>) client.sendRequest(rpcRequest, timeoutMillis);
+            } catch (RuntimeException e) {
+                //服务发现、建立连接等同步阶段的失败同样通过future交给调用方
+                CompletableFuture<Object> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+            //在完成响应future的EventLoop线程中校验结果并取出数据
+            return completableFuture.thenApply(rpcResponse -> {
+                RpcMessageChecker.check(rpcRequest, rpcResponse);
+                return rpcResponse.getData();
+            });
+        }
+        //BIO客户端的异步调用在虚拟线程或调用线程中完成，见SocketClient#sendRequestAsync
+        CompletableFuture<RpcResponse<Object>> responseFuture = ((SocketClient) client).sendRequestAsync(rpcRequest, timeoutMillis);
+        return responseFuture.thenApply(rpcResponse -> {
+            RpcMessageChecker.check(rpcRequest, rpcResponse);
+            return rpcResponse.getData();
+        });
+    }
+
+    /**
+     * 代理方法对应的调用信息
+     */
+    private static final class MethodMetadata {
+
+        private final String serviceName;
+        private final boolean async;
+        private final long timeoutMillis;
+        private final int methodId;
+
+        MethodMetadata(Method method) {
+            this.async = method.getReturnType() == CompletableFuture.class;
+            this.serviceName = async ? resolveServiceName(method.getDeclaringClass()) : method.getDeclaringClass().getName();
+            //超时时间按服务端的服务名配置，同步接口与异步伴生接口共用同一份配置
+            this.timeoutMillis = RpcConfig.getRequestTimeout(serviceName, method.getName());
+            this.methodId = METHOD_IDS.computeIfAbsent(method, m -> METHOD_ID_GENERATOR.incrementAndGet());
+        }
+
+        //XxxAsync且同一类加载器下存在接口Xxx时视为Xxx的异步伴生接口，否则就是服务接口本身
+        private static String resolveServiceName(Class<?> declaringClass) {
+            String name = declaringClass.getName();
+            if (name.endsWith(ASYNC_SUFFIX) && name.length() > ASYNC_SUFFIX.length()) {
+                String syncName = name.substring(0, name.length() - ASYNC_SUFFIX.length());
+                try {
+                    Class<?> syncInterface = Class.forName(syncName, false, declaringClass.getClassLoader());
+                    if (syncInterface.isInterface()) {
+                        return syncName;
+                    }
+                } catch (ClassNotFoundException ignored) {
+                    //不是伴生接口
+                }
+            }
+            return name;
+        }
+    }
 }
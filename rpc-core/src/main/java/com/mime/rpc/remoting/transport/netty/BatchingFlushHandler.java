@@ -0,0 +1,45 @@
+package com.mime.rpc.remoting.transport.netty;
+
+import com.mime.rpc.config.RpcConfig;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+/**
+ * 合并flush，减少系统调用次数
+ * 客户端、服务端每条消息都是writeAndFlush，高并发下相当于每个RPC一次write系统调用
+ * 该处理器把同一轮EventLoop中的多次flush合并为一次：读事件处理期间的flush推迟到channelReadComplete，
+ * 其他时候（例如业务线程提交的写出）推迟到EventLoop当前任务执行完后，低负载时只多一次任务调度，几乎不增加延迟
+ * 攒够 netty.flush.consolidation.messages 条消息或 netty.flush.consolidation.bytes 字节时立即flush，避免攒得过多
+ */
+public class BatchingFlushHandler extends FlushConsolidationHandler {
+
+    private final int maxPendingBytes;
+
+    private BatchingFlushHandler(int maxPendingMessages, int maxPendingBytes) {
+        super(maxPendingMessages, true);
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * 按配置在pipeline头部加入合并flush的处理器，需要放在编码器之前（靠近head）才能看到编码后的字节数
+     */
+    public static void addIfEnabled(ChannelPipeline pipeline) {
+        int maxPendingMessages = RpcConfig.getFlushConsolidationMessages();
+        if (maxPendingMessages > 0) {
+            pipeline.addFirst(new BatchingFlushHandler(maxPendingMessages, RpcConfig.getFlushConsolidationBytes()));
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        ChannelOutboundBuffer outboundBuffer = ctx.channel().unsafe().outboundBuffer();
+        if (outboundBuffer != null && outboundBuffer.totalPendingWriteBytes() >= maxPendingBytes) {
+            //待写出的数据已经够多，不再等待
+            ctx.flush();
+        } else {
+            super.flush(ctx);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mime.rpc.remoting.transport.netty;
+
+import com.mime.rpc.config.RpcConfig;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Netty传输层的选择与通道参数
+ * Linux上可用时使用epoll原生传输（边缘触发，少一层JDK Selector的封装，产生的垃圾对象也更少），否则退回NIO
+ * 通过 netty.transport 可以强制指定：auto（默认）、epoll、nio，指定epoll但不可用时同样退回NIO
+ * 服务端、客户端的EventLoopGroup、通道类型和通道参数都从这里取，保证两端的配置方式一致
+ */
+public final class NettyTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyTransport.class);
+
+    private static final boolean EPOLL = useEpoll();
+
+    private NettyTransport() {
+    }
+
+    private static boolean useEpoll() {
+        String transport = RpcConfig.getNettyTransport();
+        if ("nio".equals(transport)) {
+            return false;
+        }
+        if (Epoll.isAvailable()) {
+            logger.info("使用epoll传输");
+            return true;
+        }
+        if ("epoll".equals(transport)) {
+            logger.warn("epoll传输不可用，使用NIO传输: {}", Epoll.unavailabilityCause().toString());
+        }
+        return false;
+    }
+
+    public static boolean isEpoll() {
+        return EPOLL;
+    }
+
+    /**
+     * 创建EventLoopGroup，threads为0时使用Netty的默认线程数（CPU核数的2倍）
+     */
+    public static EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(threadNamePrefix);
+        return EPOLL ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public static Class<? extends ServerChannel> serverChannelClass() {
+        return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends SocketChannel> socketChannelClass() {
+        return EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * 开启SO_REUSEPORT，同一端口可以绑定多个监听socket，由内核把新连接分散到各个监听socket上
+     * 只有epoll传输支持，返回是否开启成功
+     */
+    public static boolean enableReusePort(ServerBootstrap serverBootstrap) {
+        if (!EPOLL) {
+            return false;
+        }
+        serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        return true;
+    }
+
+    /**
+     * 服务端接受的连接使用的通道参数
+     */
+    public static void applyChildOptions(ServerBootstrap serverBootstrap) {
+        serverBootstrap.childOption(ChannelOption.ALLOCATOR, allocator());
+        int receiveBufferSize = RpcConfig.getNettyReceiveBufferSize();
+        if (receiveBufferSize > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        int sendBufferSize = RpcConfig.getNettySendBufferSize();
+        if (sendBufferSize > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        serverBootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark());
+        if (EPOLL) {
+            //请求-响应模式下尽快回ACK，不等待延迟确认
+            serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+    }
+
+    /**
+     * 客户端连接使用的通道参数
+     */
+    public static void applyOptions(Bootstrap bootstrap) {
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator());
+        int receiveBufferSize = RpcConfig.getNettyReceiveBufferSize();
+        if (receiveBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        int sendBufferSize = RpcConfig.getNettySendBufferSize();
+        if (sendBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark());
+        if (EPOLL) {
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, true);
+        }
+    }
+
+    private static ByteBufAllocator allocator() {
+        return "unpooled".equals(RpcConfig.getNettyAllocator()) ? UnpooledByteBufAllocator.DEFAULT : PooledByteBufAllocator.DEFAULT;
+    }
+
+    private static WriteBufferWaterMark writeBufferWaterMark() {
+        int low = RpcConfig.getNettyWriteBufferLowWaterMark();
+        int high = RpcConfig.getNettyWriteBufferHighWaterMark();
+        //高水位不能低于低水位，配置有误时以低水位为准
+        return new WriteBufferWaterMark(low, Math.max(low, high));
+    }
+}
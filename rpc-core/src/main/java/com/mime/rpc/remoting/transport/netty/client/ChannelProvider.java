@@ -1,51 +1,163 @@
 package com.mime.rpc.remoting.transport.netty.client;
 
+import com.mime.rpc.config.RpcConfig;
 import io.netty.channel.*;
 import lombok.extern.slf4j.Slf4j;
 
 
 import java.net.InetSocketAddress;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
 
 
 /**
  * 用于获取 Channel 对象
+ * 每个服务端地址对应一个固定大小的连接池（client.connections.per.endpoint），多个连接分布在不同的EventLoop上，
+ * 多核客户端的请求不必都挤在一条TCP连接和一个EventLoop线程上
+ * 直接以InetSocketAddress对象为键查找，ConcurrentHashMap的读取和连接槽位的读取都不加锁
+ *
+ * 槽位中存放的是连接的future而不是连接本身：同一槽位正在建立的连接由所有并发调用方共享，不会重复发起连接，
+ * 连接失败时future以异常结束，此后按指数退避，退避期内直接返回失败的future，不再反复连接不可用的地址
  */
 @Slf4j
 public class ChannelProvider {
 
-    //维护一个地址到channel的映射关系
-    private final Map<String, Channel> channelMap;
+    //连接失败后的首次退避时间及退避上限
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    //维护一个地址到连接池的映射关系
+    private final Map<InetSocketAddress, ChannelPool> channelMap;
+    private final int connectionsPerEndpoint;
+    private final boolean leastInFlight;
 
     public ChannelProvider() {
         channelMap = new ConcurrentHashMap<>();
+        connectionsPerEndpoint = RpcConfig.getConnectionsPerEndpoint();
+        leastInFlight = RpcConfig.isLeastInFlightConnectionSelect();
     }
 
-    public Channel get(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        //判断对应地址是否有连接
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            //如果是，确定连接是否可用，如果是，则直接获取
-            if (channel != null && channel.isActive()) {
-                return channel;
-            } else {
-                channelMap.remove(key);
+    /**
+     * 从地址对应的连接池中选出一个连接，选中的槽位还没有连接或连接已失效时用connector异步新建，不会阻塞调用线程
+     */
+    public CompletableFuture<Channel> get(InetSocketAddress inetSocketAddress,
+                                          Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        ChannelPool channelPool = channelMap.get(inetSocketAddress);
+        if (channelPool == null) {
+            channelPool = channelMap.computeIfAbsent(inetSocketAddress, address -> new ChannelPool(connectionsPerEndpoint));
+        }
+        int index = leastInFlight ? channelPool.leastInFlightIndex() : channelPool.nextIndex();
+        while (true) {
+            CompletableFuture<Channel> channelFuture = channelPool.slots.get(index);
+            if (channelFuture != null) {
+                if (!channelFuture.isDone()) {
+                    //正在连接，共享同一个连接结果
+                    return channelFuture;
+                }
+                if (channelFuture.isCompletedExceptionally()) {
+                    if (System.nanoTime() - channelPool.retryAt < 0) {
+                        //仍在退避期内，直接失败
+                        return channelFuture;
+                    }
+                } else if (channelFuture.join().isActive()) {
+                    return channelFuture;
+                }
+            }
+            //如果之前没有连接过或则channel通道失效了，抢到槽位的线程负责重连
+            CompletableFuture<Channel> newChannelFuture = new CompletableFuture<>();
+            if (channelPool.slots.compareAndSet(index, channelFuture, newChannelFuture)) {
+                connect(inetSocketAddress, channelPool, connector, newChannelFuture);
+                return newChannelFuture;
             }
         }
-        return null;
     }
 
-    //保存channel
-    public void set(InetSocketAddress inetSocketAddress, Channel channel) {
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+    private void connect(InetSocketAddress inetSocketAddress, ChannelPool channelPool,
+                         Function<InetSocketAddress, CompletableFuture<Channel>> connector,
+                         CompletableFuture<Channel> channelFuture) {
+        CompletableFuture<Channel> connectFuture;
+        try {
+            connectFuture = connector.apply(inetSocketAddress);
+        } catch (RuntimeException e) {
+            connectFuture = new CompletableFuture<>();
+            connectFuture.completeExceptionally(e);
+        }
+        connectFuture.whenComplete((channel, throwable) -> {
+            if (throwable == null) {
+                channelPool.failures = 0;
+                channelFuture.complete(channel);
+                return;
+            }
+            //连续失败次数越多，退避时间越长
+            int failures = Math.min(channelPool.failures + 1, 30);
+            long backoff = Math.min(INITIAL_BACKOFF_NANOS << (failures - 1), MAX_BACKOFF_NANOS);
+            channelPool.failures = failures;
+            channelPool.retryAt = System.nanoTime() + backoff;
+            log.warn("连接 [{}] 失败，{}ms 内不再重试", inetSocketAddress, TimeUnit.NANOSECONDS.toMillis(backoff));
+            channelFuture.completeExceptionally(throwable);
+        });
     }
 
     public void remove(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        channelMap.remove(key);
+        channelMap.remove(inetSocketAddress);
         log.info("Channel map size :[{}]", channelMap.size());
     }
+
+    /**
+     * 单个服务端地址的连接池，槽位数固定，槽位中的连接失效后原地替换
+     */
+    private static final class ChannelPool {
+
+        private final AtomicReferenceArray<CompletableFuture<Channel>> slots;
+        private final AtomicInteger counter = new AtomicInteger();
+        //该地址连续连接失败的次数及下次允许重连的时间
+        private volatile int failures;
+        private volatile long retryAt;
+
+        ChannelPool(int size) {
+            slots = new AtomicReferenceArray<>(size);
+        }
+
+        int nextIndex() {
+            int size = slots.length();
+            return size == 1 ? 0 : (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        }
+
+        //未完成请求数由各连接的EventLoop维护，这里读到的是近似值，空槽位和失效连接优先被选中以便尽快补齐
+        int leastInFlightIndex() {
+            int size = slots.length();
+            if (size == 1) {
+                return 0;
+            }
+            int start = nextIndex();
+            int best = start;
+            int bestInFlight = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                int index = (start + i) % size;
+                CompletableFuture<Channel> channelFuture = slots.get(index);
+                if (channelFuture == null) {
+                    return index;
+                }
+                //正在连接或连接失败的槽位不参与比较
+                if (!channelFuture.isDone() || channelFuture.isCompletedExceptionally()) {
+                    continue;
+                }
+                Channel channel = channelFuture.join();
+                if (!channel.isActive()) {
+                    return index;
+                }
+                int inFlight = UnprocessedRequests.of(channel).inFlight();
+                if (inFlight < bestInFlight) {
+                    best = index;
+                    bestInFlight = inFlight;
+                }
+            }
+            return best;
+        }
+    }
 }
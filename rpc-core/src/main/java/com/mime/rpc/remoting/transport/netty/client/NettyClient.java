@@ -1,34 +1,38 @@
 package com.mime.rpc.remoting.transport.netty.client;
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
 import com.mime.rpc.enumeration.RpcError;
 import com.mime.rpc.exception.RpcException;
 import com.mime.rpc.factory.SingletonFactory;
+import com.mime.rpc.loadbalancer.EndpointStats;
 import com.mime.rpc.loadbalancer.LoadBalancer;
 import com.mime.rpc.loadbalancer.RandomLoadBalancer;
 import com.mime.rpc.registry.ServiceDiscovery;
-import com.mime.rpc.registry.nacos.NacosServiceDiscovery;
 import com.mime.rpc.remoting.codec.CommonDecoder;
 import com.mime.rpc.remoting.codec.CommonEncoder;
 import com.mime.rpc.remoting.codec.MessageDecoder;
 import com.mime.rpc.remoting.handler.RequestHandler;
 import com.mime.rpc.remoting.transport.RpcClient;
+import com.mime.rpc.remoting.transport.netty.BatchingFlushHandler;
+import com.mime.rpc.remoting.transport.netty.NettyTransport;
 import com.mime.rpc.serializer.CommonSerializer;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.BitSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -40,11 +44,15 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class NettyClient implements RpcClient {
 
+    //连接上已经发送过完整请求的方法编号，只在连接的EventLoop线程中访问
+    private static final AttributeKey<BitSet> ANNOUNCED_METHODS = AttributeKey.valueOf("announcedMethods");
+
     private final EventLoopGroup group;
     private final Bootstrap bootstrap;
     private final ServiceDiscovery serviceDiscovery;
     private final ChannelProvider channelProvider;
-    private final UnprocessedRequests unprocessedRequests;
+    //是否发送只带方法编号的精简请求
+    private final boolean compactRequests;
 
 
     //数个客户端的构造器
@@ -54,14 +62,15 @@ public class NettyClient implements RpcClient {
 
     public NettyClient(Integer serializer) {
         //初始化EventLoopGroup、Bootstrap等资源
-        group = new NioEventLoopGroup();
+        //Linux上优先使用epoll传输，线程数可以通过配置调整
+        group = NettyTransport.newEventLoopGroup(RpcConfig.getNettyClientThreads(), "netty-rpc-client");
         bootstrap = new Bootstrap();
         bootstrap.group(group)
-                .channel(NioSocketChannel.class)
+                .channel(NettyTransport.socketChannelClass())
                 .handler(new LoggingHandler(LogLevel.INFO))
                 //连接超时的时间
                 //如果超过此时间或无法建立连接，则连接失败。
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 20000)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, RpcConfig.getConnectTimeout())
                 .option(ChannelOption.TCP_NODELAY,true)
                 //channel连接建立后会初始化添加这些channel
                 .handler(new ChannelInitializer<SocketChannel>() {
@@ -75,59 +84,139 @@ public class NettyClient implements RpcClient {
                         p.addLast(new MessageDecoder());
                         //处理响应数据包的handler
                         p.addLast(new NettyClientHandler());
+                        //合并同一轮EventLoop任务中各个请求的flush
+                        BatchingFlushHandler.addIfEnabled(p);
                     }
                 });
-        this.serviceDiscovery = SingletonFactory.getInstance(NacosServiceDiscovery.class);
+        //缓冲区大小、写水位、内存分配器等通道参数
+        NettyTransport.applyOptions(bootstrap);
+        this.serviceDiscovery = RpcConfig.getServiceDiscovery();
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        this.compactRequests = RpcConfig.isCompactRequestEnabled()
+                && CommonSerializer.getByCode(serializer).supportsCompactRequest();
     }
 
     @Override
-    public Object sendRequest(RpcRequest rpcRequest) {
+    public Object sendRequest(RpcRequest rpcRequest, long timeoutMillis) {
         //构建返回值--也可以用netty提供的Promise
         CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
         //获取服务地址
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        log.info("负载均衡选择结果：{}",inetSocketAddress.toString());
-        //获取服务器地址相关通道
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            //放置未处理的请求
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
-            channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) future -> {
-                //由其他线程调用回调方法
-                if (future.isSuccess()) {
-                    log.info("client send message: [{}]", rpcRequest.toString());
-                } else {
-                    future.channel().close();
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("Send failed:", future.cause());
+        log.debug("负载均衡选择结果：{}", inetSocketAddress);
+        //记录实例的活跃请求数与响应时间，供按负载选择实例的负载均衡器使用，超时、连接断开都会以异常结束future
+        EndpointStats stats = EndpointStats.of(inetSocketAddress);
+        long startNanos = stats.begin();
+        resultFuture.whenComplete((rpcResponse, throwable) -> stats.end(startNanos, throwable == null));
+        //获取服务器地址相关通道，连接尚未建立好时在连接完成的回调中发送，调用线程不会阻塞
+        CompletableFuture<Channel> channelFuture = getChannel(inetSocketAddress);
+        if (channelFuture.isDone() && !channelFuture.isCompletedExceptionally()) {
+            send(channelFuture.join(), rpcRequest, resultFuture, timeoutMillis);
+        } else {
+            //请求的超时从发起调用（startNanos）开始计算：等待连接的时间也算在内，连接建立后只把剩余的时间交给请求表
+            Timeout connectTimeout = timeoutMillis > 0
+                    ? UnprocessedRequests.schedule(() -> resultFuture.completeExceptionally(timeoutException(rpcRequest)), timeoutMillis)
+                    : null;
+            channelFuture.whenComplete((channel, throwable) -> {
+                if (connectTimeout != null) {
+                    connectTimeout.cancel();
+                }
+                if (resultFuture.isDone()) {
+                    //等待连接期间已经超时
+                    return;
+                }
+                if (throwable != null) {
+                    resultFuture.completeExceptionally(throwable);
+                    return;
                 }
+                long remainingMillis = timeoutMillis;
+                if (timeoutMillis > 0) {
+                    remainingMillis = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    if (remainingMillis <= 0) {
+                        resultFuture.completeExceptionally(timeoutException(rpcRequest));
+                        return;
+                    }
+                }
+                send(channel, rpcRequest, resultFuture, remainingMillis);
             });
-        } else {
-            throw new IllegalStateException();
         }
         //返回的相当于句柄
         return resultFuture;
     }
 
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
-        Channel channel = channelProvider.get(inetSocketAddress);
-        //如果之前没有连接过或则channel通道失效了
-        if (channel == null) {
-            //重连连接
-            channel = doConnect(inetSocketAddress);
-            channelProvider.set(inetSocketAddress, channel);
+    private static RpcException timeoutException(RpcRequest rpcRequest) {
+        return new RpcException(RpcError.REQUEST_TIMEOUT, "连接未能在超时时间内建立, service:" + rpcRequest.getInterfaceName());
+    }
+
+    private void send(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture, long timeoutMillis) {
+        //请求号的分配与登记都交给连接所属的EventLoop完成，写出本来也要切换到该线程，不会多一次线程切换
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            doSend(channel, rpcRequest, resultFuture, timeoutMillis);
+        } else {
+            eventLoop.execute(() -> doSend(channel, rpcRequest, resultFuture, timeoutMillis));
+        }
+    }
+
+    private void doSend(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture, long timeoutMillis) {
+        //排队期间连接可能已经断开，此时channelInactive已经处理过未完成请求表，不能再往里放
+        if (!channel.isActive()) {
+            resultFuture.completeExceptionally(new RpcException(RpcError.CHANNEL_CLOSED, channel.toString()));
+            return;
         }
-        return channel;
+        //放置未处理的请求，同时得到本连接内的请求号，并在时间轮上登记超时
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+        long requestId = unprocessedRequests.put(resultFuture, timeoutMillis);
+        rpcRequest.setRequestId(requestId);
+        channel.writeAndFlush(compact(channel, rpcRequest)).addListener((ChannelFutureListener) future -> {
+            //回调同样在EventLoop线程中执行
+            if (future.isSuccess()) {
+                log.info("client send message: [{}]", rpcRequest.toString());
+            } else {
+                unprocessedRequests.remove(requestId);
+                future.channel().close();
+                resultFuture.completeExceptionally(future.cause());
+                log.error("Send failed:", future.cause());
+            }
+        });
+    }
+
+    /**
+     * 一条连接上某个方法的第一次请求完整发送，服务端据此登记方法编号，之后只发送方法编号和参数
+     * 只能在连接的EventLoop线程中调用，写出顺序与登记顺序一致，服务端总是先收到完整请求
+     */
+    private Object compact(Channel channel, RpcRequest rpcRequest) {
+        int methodId = rpcRequest.getMethodId();
+        if (!compactRequests || methodId <= 0) {
+            return rpcRequest;
+        }
+        Attribute<BitSet> attribute = channel.attr(ANNOUNCED_METHODS);
+        BitSet announced = attribute.get();
+        if (announced == null) {
+            announced = new BitSet();
+            attribute.set(announced);
+        }
+        if (!announced.get(methodId)) {
+            announced.set(methodId);
+            return rpcRequest;
+        }
+        RpcRequest compactRequest = new RpcRequest();
+        compactRequest.setRequestId(rpcRequest.getRequestId());
+        compactRequest.setParameters(rpcRequest.getParameters());
+        compactRequest.setHeartBeat(false);
+        compactRequest.setMethodId(methodId);
+        return compactRequest;
+    }
+
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
+        //从该地址的连接池中选择连接，槽位为空或连接失效时重新连接，同一槽位并发的连接请求共享一次连接
+        return channelProvider.get(inetSocketAddress, this::doConnect);
     }
 
     /**
      * 连接服务器并获取通道，以便可以向服务器发送rpc消息
+     * 连接的过程是异步的，连接失败时返回的future以异常结束
      */
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
-        //连接的过程是异步的
+    public CompletableFuture<Channel> doConnect(InetSocketAddress inetSocketAddress) {
         CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
         bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
@@ -135,12 +224,12 @@ public class NettyClient implements RpcClient {
                 //放入结果（channel通道）
                 completableFuture.complete(future.channel());
             } else {
-                throw new IllegalStateException();
+                log.error("连接 [{}] 失败: {}", inetSocketAddress, future.cause().toString());
+                completableFuture.completeExceptionally(
+                        new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ": " + inetSocketAddress, future.cause()));
             }
         });
-        //阻塞式获得结果
-        return completableFuture.get();
-        //return bootstrap.connect(inetSocketAddress).sync().channel();
+        return completableFuture;
     }
 
     public void close() {
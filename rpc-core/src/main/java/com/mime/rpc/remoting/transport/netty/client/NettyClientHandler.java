@@ -2,9 +2,9 @@ package com.mime.rpc.remoting.transport.netty.client;
 
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
-import com.mime.rpc.factory.SingletonFactory;
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
 import com.mime.rpc.serializer.CommonSerializer;
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -15,8 +15,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-import java.net.InetSocketAddress;
-
 /**
  * Netty客户端侧处理器
  */
@@ -24,19 +22,18 @@ public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse<
 
     private static final Logger logger = LoggerFactory.getLogger(NettyClientHandler.class);
 
-    private final NettyClient nettyClient;
-    private final UnprocessedRequests unprocessedRequests;
-
-    public NettyClientHandler() {
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyClient=SingletonFactory.getInstance(NettyClient.class);
-    }
-
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcResponse<Object> msg) throws Exception {
         logger.info(String.format("客户端接收到消息: %s", msg));
-        //放入请求结果
-        unprocessedRequests.complete(msg);
+        //放入请求结果，未完成请求表属于当前连接
+        UnprocessedRequests.of(ctx.channel()).complete(msg);
+    }
+
+    //连接断开后不会再有响应，让该连接上所有未完成的请求立即失败，不必等到超时
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        UnprocessedRequests.of(ctx.channel()).failAll(new RpcException(RpcError.CHANNEL_CLOSED, String.valueOf(ctx.channel().remoteAddress())));
+        super.channelInactive(ctx);
     }
 
     @Override
@@ -53,11 +50,10 @@ public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse<
             //触发读事件
             if (state == IdleState.WRITER_IDLE) {
                 logger.info("发送心跳包 [{}]", ctx.channel().remoteAddress());
-                //使用的是默认的序列化方式
-                Channel channel = nettyClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
+                //心跳包走空闲的这条连接本身，同一地址可能有多条连接，不能再按地址去取连接
                 RpcRequest rpcRequest = new RpcRequest();
                 rpcRequest.setHeartBeat(true);
-                channel.writeAndFlush(rpcRequest).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                ctx.writeAndFlush(rpcRequest).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
         } else {
             super.userEventTriggered(ctx, evt);
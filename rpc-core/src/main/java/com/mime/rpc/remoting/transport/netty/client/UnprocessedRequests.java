@@ -2,31 +2,176 @@ package com.mime.rpc.remoting.transport.netty.client;
 
 
 import com.mime.rpc.entity.RpcResponse;
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 
+/**
+ * 单个连接上尚未收到响应的请求
+ * 请求号在连接内单调递增，放入、取出都只在该连接所属的EventLoop线程中进行，
+ * 所以不需要加锁，可以直接使用以基本类型long为键的LongObjectHashMap，不会产生装箱和链表节点等垃圾对象
+ *
+ * 请求超时由所有连接共享的时间轮（HashedWheelTimer）负责，登记、取消超时都是O(1)的，几十万个未完成请求也不会有明显开销
+ * 超时任务在时间轮线程中触发后再切回EventLoop线程移除请求，保证请求表始终只被一个线程访问
+ */
 public class UnprocessedRequests {
 
+    private static final Logger logger = LoggerFactory.getLogger(UnprocessedRequests.class);
+
+    private static final AttributeKey<UnprocessedRequests> UNPROCESSED_REQUESTS = AttributeKey.valueOf("unprocessedRequests");
+
+    //时间轮每10ms走一格，超时的精度也就是10ms左右
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-request-timeout", true), 10, TimeUnit.MILLISECONDS, 512);
+
+    private final EventLoop eventLoop;
     //存放消息记录，客户端拿着消息的唯一标识可以从这个容器中拿到结果
-    private static ConcurrentHashMap<String, CompletableFuture<RpcResponse<Object>>> unprocessedResponseFutures = new ConcurrentHashMap<>();
+    private final LongObjectHashMap<PendingRequest> unprocessedResponseFutures = new LongObjectHashMap<>();
+    //上一个分配出去的请求号
+    private long lastRequestId;
+    //未完成请求数，只由EventLoop线程写入，供选择连接的线程读取
+    private volatile int inFlight;
+
+    private UnprocessedRequests(EventLoop eventLoop) {
+        this.eventLoop = eventLoop;
+    }
 
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        unprocessedResponseFutures.put(requestId, future);
+    /**
+     * 获取连接上的未完成请求表，第一次获取时创建
+     */
+    public static UnprocessedRequests of(Channel channel) {
+        Attribute<UnprocessedRequests> attribute = channel.attr(UNPROCESSED_REQUESTS);
+        UnprocessedRequests unprocessedRequests = attribute.get();
+        if (unprocessedRequests == null) {
+            UnprocessedRequests created = new UnprocessedRequests(channel.eventLoop());
+            unprocessedRequests = attribute.setIfAbsent(created);
+            if (unprocessedRequests == null) {
+                unprocessedRequests = created;
+            }
+        }
+        return unprocessedRequests;
     }
 
-    public void remove(String requestId) {
-        unprocessedResponseFutures.remove(requestId);
+    /**
+     * 登记一个请求并为其分配请求号，只能在连接的EventLoop线程中调用
+     *
+     * @param timeoutMillis 超时时间，不大于0表示不超时
+     */
+    public long put(CompletableFuture<RpcResponse<Object>> future, long timeoutMillis) {
+        long requestId = ++lastRequestId;
+        PendingRequest pendingRequest = new PendingRequest(requestId, future);
+        unprocessedResponseFutures.put(requestId, pendingRequest);
+        inFlight = unprocessedResponseFutures.size();
+        if (timeoutMillis > 0) {
+            pendingRequest.timeout = TIMEOUT_TIMER.newTimeout(pendingRequest, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return requestId;
+    }
+
+    /**
+     * 在共享的时间轮上登记一个延时任务，用于连接尚未建立、请求还没有放入请求表时的超时
+     * 任务在时间轮线程中执行
+     */
+    static Timeout schedule(Runnable task, long delayMillis) {
+        return TIMEOUT_TIMER.newTimeout(timeout -> task.run(), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void remove(long requestId) {
+        PendingRequest pendingRequest = unprocessedResponseFutures.remove(requestId);
+        if (pendingRequest != null) {
+            inFlight = unprocessedResponseFutures.size();
+            pendingRequest.cancelTimeout();
+        }
     }
 
     //放置服务端处理的结果
     public void complete(RpcResponse<Object> rpcResponse) {
-        CompletableFuture<RpcResponse<Object>> future = unprocessedResponseFutures.remove(rpcResponse.getRequestId());
-        if (null != future) {
-            future.complete(rpcResponse);
+        PendingRequest pendingRequest = unprocessedResponseFutures.remove(rpcResponse.getRequestId());
+        if (null != pendingRequest) {
+            inFlight = unprocessedResponseFutures.size();
+            pendingRequest.cancelTimeout();
+            pendingRequest.future.complete(rpcResponse);
         } else {
-            throw new IllegalStateException();
+            //请求已经超时或者连接上的请求已被全部置为失败，迟到的响应直接丢弃
+            logger.warn("丢弃迟到的响应，请求号: {}", rpcResponse.getRequestId());
+        }
+    }
+
+    /**
+     * 当前连接上未完成的请求数，可以在任意线程中调用
+     */
+    public int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * 连接断开时让所有未完成的请求立即失败，而不是等到超时
+     */
+    public void failAll(Throwable cause) {
+        if (unprocessedResponseFutures.isEmpty()) {
+            return;
+        }
+        List<PendingRequest> pendingRequests = new ArrayList<>(unprocessedResponseFutures.values());
+        unprocessedResponseFutures.clear();
+        inFlight = 0;
+        for (PendingRequest pendingRequest : pendingRequests) {
+            pendingRequest.cancelTimeout();
+            pendingRequest.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 未完成请求，同时作为时间轮的超时任务
+     */
+    private final class PendingRequest implements TimerTask, Runnable {
+
+        private final long requestId;
+        private final CompletableFuture<RpcResponse<Object>> future;
+        private Timeout timeout;
+
+        PendingRequest(long requestId, CompletableFuture<RpcResponse<Object>> future) {
+            this.requestId = requestId;
+            this.future = future;
+        }
+
+        void cancelTimeout() {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        //时间轮线程中触发，切回EventLoop线程处理
+        @Override
+        public void run(Timeout timeout) {
+            eventLoop.execute(this);
+        }
+
+        @Override
+        public void run() {
+            //仍在表中才说明确实超时了，否则响应已经先一步到达
+            //用原始long的get/remove，避免Map.remove(Object, Object)装箱
+            if (unprocessedResponseFutures.get(requestId) == this) {
+                unprocessedResponseFutures.remove(requestId);
+                inFlight = unprocessedResponseFutures.size();
+                future.completeExceptionally(new RpcException(RpcError.REQUEST_TIMEOUT, "requestId:" + requestId));
+            }
         }
     }
 }
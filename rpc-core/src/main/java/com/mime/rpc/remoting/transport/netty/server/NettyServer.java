@@ -1,23 +1,25 @@
 package com.mime.rpc.remoting.transport.netty.server;
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.hook.ShutdownHook;
 import com.mime.rpc.provider.ServiceProviderImpl;
-import com.mime.rpc.registry.nacos.NacosServiceRegistry;
 import com.mime.rpc.remoting.codec.CommonDecoder;
 import com.mime.rpc.remoting.codec.CommonEncoder;
 import com.mime.rpc.remoting.codec.MessageDecoder;
 import com.mime.rpc.remoting.transport.AbstractRpcServer;
+import com.mime.rpc.remoting.transport.netty.BatchingFlushHandler;
+import com.mime.rpc.remoting.transport.netty.NettyTransport;
 import com.mime.rpc.serializer.CommonSerializer;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,7 +34,7 @@ public class NettyServer extends AbstractRpcServer {
     }
 
     public NettyServer(Integer serializer) {
-        serviceRegistry = new NacosServiceRegistry();
+        serviceRegistry = RpcConfig.getServiceRegistry();
         serviceProvider = new ServiceProviderImpl();
         this.serializer = CommonSerializer.getByCode(serializer);
         scanServices();
@@ -42,12 +44,19 @@ public class NettyServer extends AbstractRpcServer {
     public void start() {
         //注册（调用）钩子函数
         ShutdownHook.getShutdownHook().addClearAllHook();
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        //同一端口上的监听socket数，每个监听socket独占boss组中的一个EventLoop
+        int acceptors = RpcConfig.getServerAcceptors();
+        if (acceptors > 1 && !NettyTransport.isEpoll()) {
+            logger.warn("当前传输不支持SO_REUSEPORT，只绑定一个监听socket");
+            acceptors = 1;
+        }
+        //Linux上优先使用epoll传输，线程数可以通过配置调整
+        EventLoopGroup bossGroup = NettyTransport.newEventLoopGroup(Math.max(RpcConfig.getNettyBossThreads(), acceptors), "netty-rpc-boss");
+        EventLoopGroup workerGroup = NettyTransport.newEventLoopGroup(RpcConfig.getNettyWorkerThreads(), "netty-rpc-worker");
         try {
             ServerBootstrap serverBootstrap = new ServerBootstrap();
             serverBootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(NettyTransport.serverChannelClass())
                     .handler(new LoggingHandler(LogLevel.INFO))
                     //表示系统用于临时存放已完成三次握手的请求的队列的最大长度,如果连接建立频繁，服务器处理创建新连接较慢，可以适当调大这个参数
                     .option(ChannelOption.SO_BACKLOG, 1024)
@@ -64,13 +73,27 @@ public class NettyServer extends AbstractRpcServer {
                                     .addLast(new CommonEncoder(serializer))
                                     .addLast(new MessageDecoder())
                                     .addLast(new NettyServerHandler());
+                            //合并同一轮读事件中各个响应的flush
+                            BatchingFlushHandler.addIfEnabled(pipeline);
                         }
                     });
+            //缓冲区大小、写水位、内存分配器等通道参数
+            NettyTransport.applyChildOptions(serverBootstrap);
+            if (acceptors > 1) {
+                NettyTransport.enableReusePort(serverBootstrap);
+            }
             //服务端绑定端口（不指定ip的话默认ip就是0.0.0.0任意网卡地址）
-            ChannelFuture future = serverBootstrap.bind(port).sync();
+            //开启SO_REUSEPORT时多次绑定同一端口，每次绑定的监听channel依次注册到boss组的下一个EventLoop上，
+            //由内核把新连接分散到各个监听socket，避免单个accept线程成为瓶颈
+            List<Channel> serverChannels = new ArrayList<>(acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(serverBootstrap.bind(port).sync().channel());
+            }
             //这里sync会阻塞主线程继续执行，直到其他地方将channel通道关闭了--即其他地方调用了channel.close（）方法
             //目的是优雅的释放nio资源
-            future.channel().closeFuture().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             logger.error("启动服务器时有错误发生: ", e);
         } finally {
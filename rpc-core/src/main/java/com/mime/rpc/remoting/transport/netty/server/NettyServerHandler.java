@@ -1,10 +1,14 @@
 package com.mime.rpc.remoting.transport.netty.server;
 
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.enumeration.ResponseCode;
 import com.mime.rpc.factory.SingletonFactory;
-import com.mime.rpc.old.RequestHandler1;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
+import com.mime.rpc.provider.MethodInvoker;
 import com.mime.rpc.registry.ServiceRegistry;
+import com.mime.rpc.remoting.dispatcher.Dispatcher;
+import com.mime.rpc.remoting.handler.MethodIdTable;
 import com.mime.rpc.remoting.handler.RequestHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -16,6 +20,9 @@ import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Netty中处理RpcRequest的Handler
  */
@@ -23,9 +30,14 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
 
     private static final Logger logger = LoggerFactory.getLogger(NettyServerHandler.class);
     private final RequestHandler requestHandler;
+    private final Dispatcher dispatcher;
+    //每个连接一个处理器实例，方法编号表随之属于该连接
+    private final MethodIdTable methodIdTable;
 
     public NettyServerHandler() {
         this.requestHandler = SingletonFactory.getInstance(RequestHandler.class);
+        this.dispatcher = RpcConfig.getDispatcher();
+        this.methodIdTable = requestHandler.newMethodIdTable();
     }
 
     @Override
@@ -37,12 +49,14 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
                 return;
             }
             logger.info("服务器接收到请求: {}", msg);
-            //进行方法的调用
-            RpcResponse<Object> result = requestHandler.handle(msg);
-            if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                ctx.writeAndFlush(result);
-            } else {
-                logger.error("通道不可写");
+            //方法编号的登记与使用有先后顺序，必须在IO线程中按请求到达的顺序解析
+            MethodInvoker invoker = methodIdTable.resolve(msg);
+            //业务方法交给派发策略选定的线程执行，不占用IO线程；服务方法是异步的则在其完成时再写回响应
+            try {
+                dispatcher.dispatch(msg, () -> handleRequest(ctx, msg, invoker));
+            } catch (RejectedExecutionException e) {
+                logger.warn("服务端繁忙，拒绝请求: {}#{}", msg.getInterfaceName(), msg.getMethodName());
+                writeResponse(ctx, RpcResponse.fail(ResponseCode.SERVER_BUSY, msg.getRequestId()));
             }
         } finally {
             //继承自SimpleChannelInboundHandler 可由系统内部释放bytebuf
@@ -50,6 +64,32 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
         }
     }
 
+    private void handleRequest(ChannelHandlerContext ctx, RpcRequest msg, MethodInvoker invoker) {
+        CompletableFuture<RpcResponse<Object>> resultFuture;
+        try {
+            resultFuture = requestHandler.handleAsync(msg, invoker);
+        } catch (RuntimeException e) {
+            //不在IO线程中执行时异常不会传播到pipeline，直接返回失败响应，避免客户端一直等到超时
+            logger.error("处理请求时有错误发生: {}#{}", msg.getInterfaceName(), msg.getMethodName(), e);
+            writeResponse(ctx, RpcResponse.fail(ResponseCode.FAIL, msg.getRequestId()));
+            return;
+        }
+        if (resultFuture.isDone()) {
+            writeResponse(ctx, resultFuture.join());
+        } else {
+            resultFuture.thenAccept(result -> writeResponse(ctx, result));
+        }
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, RpcResponse<Object> result) {
+        //超过写高水位时响应仍然写出（暂存在出站缓冲区中），丢弃的话客户端只能等到超时
+        if (ctx.channel().isActive()) {
+            ctx.writeAndFlush(result);
+        } else {
+            logger.error("通道已关闭，丢弃响应，请求号: {}", result.getRequestId());
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.error("处理过程调用时有错误发生:");
@@ -0,0 +1,302 @@
+package com.mime.rpc.remoting.transport.nio.server;
+
+import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.entity.RpcResponse;
+import com.mime.rpc.enumeration.PackageType;
+import com.mime.rpc.enumeration.ResponseCode;
+import com.mime.rpc.enumeration.RpcError;
+import com.mime.rpc.exception.RpcException;
+import com.mime.rpc.provider.MethodInvoker;
+import com.mime.rpc.remoting.dispatcher.Dispatcher;
+import com.mime.rpc.remoting.handler.MethodIdTable;
+import com.mime.rpc.remoting.handler.RequestHandler;
+import com.mime.rpc.serializer.CommonSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NIO服务端的单个连接，负责按帧格式拆包、派发请求、写回响应
+ * read、flush只在所属Reactor线程中调用；send可以在任意线程中调用，响应编码后放入写队列再交给Reactor写出
+ *
+ * 帧格式与CommonEncoder/MessageDecoder一致（大端字节序）：
+ * +---------------+---------------+-----------------+-------------+-------------+
+ * |  Magic Number |  Package Type | Serializer Type |  Request Id | Data Length |
+ * |    4 bytes    |    4 bytes    |     4 bytes     |   8 bytes   |   4 bytes   |
+ * +---------------+---------------+-----------------+-------------+-------------+
+ */
+class NioConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+
+    private static final int MAGIC_NUMBER = 0x77466258;
+    private static final int HEADER_LENGTH = 24;
+    private static final int MAX_BODY_LENGTH = 8 * 1024 * 1024;
+
+    private final NioReactor reactor;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final RequestHandler requestHandler;
+    private final CommonSerializer serializer;
+    private final Dispatcher dispatcher;
+    //连接上的方法编号表，只在Reactor线程中按请求到达的顺序访问
+    private final MethodIdTable methodIdTable;
+
+    //上次读取剩下的半包，没有半包时为null
+    private ByteBuffer pendingRead;
+    //已编码等待写出的响应
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    //上次没有写完的数据，只在Reactor线程中访问
+    private ByteBuffer pendingWrite;
+    //是否已经在Reactor的待写出队列中，避免重复排队
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    NioConnection(NioReactor reactor, SocketChannel channel, SelectionKey key,
+                  RequestHandler requestHandler, CommonSerializer serializer, Dispatcher dispatcher) {
+        this.reactor = reactor;
+        this.channel = channel;
+        this.key = key;
+        this.requestHandler = requestHandler;
+        this.serializer = serializer;
+        this.dispatcher = dispatcher;
+        this.methodIdTable = requestHandler.newMethodIdTable();
+    }
+
+    /**
+     * 读取并处理所有完整的帧，readBuffer是Reactor共享的堆外缓冲区
+     */
+    void read(ByteBuffer readBuffer) {
+        try {
+            while (true) {
+                readBuffer.clear();
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    close();
+                    return;
+                }
+                if (n == 0) {
+                    return;
+                }
+                readBuffer.flip();
+                if (pendingRead == null) {
+                    decodeFrames(readBuffer);
+                    if (readBuffer.hasRemaining()) {
+                        //半包拷贝到连接自己的缓冲区，等待下次读取补齐
+                        pendingRead = ByteBuffer.allocate(Math.max(readBuffer.remaining(), frameLength(readBuffer)));
+                        pendingRead.put(readBuffer);
+                    }
+                } else {
+                    pendingRead = append(pendingRead, readBuffer);
+                    pendingRead.flip();
+                    decodeFrames(pendingRead);
+                    pendingRead = pendingRead.hasRemaining() ? pendingRead.compact() : null;
+                }
+                //缓冲区没有读满说明内核中的数据已经读完
+                if (n < readBuffer.capacity()) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("读取请求时有错误发生，关闭连接: {}", e.toString());
+            close();
+        }
+    }
+
+    //半包的完整帧长度，帧头还不完整时返回0
+    private static int frameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return 0;
+        }
+        return HEADER_LENGTH + buffer.getInt(buffer.position() + HEADER_LENGTH - 4);
+    }
+
+    //把in中的数据追加到处于写模式的buffer后面，容量不够时扩容
+    private static ByteBuffer append(ByteBuffer buffer, ByteBuffer in) {
+        if (buffer.remaining() < in.remaining()) {
+            int required = buffer.position() + in.remaining();
+            buffer.flip();
+            ByteBuffer expanded = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+            expanded.put(buffer);
+            buffer = expanded;
+        }
+        buffer.put(in);
+        return buffer;
+    }
+
+    private void decodeFrames(ByteBuffer buffer) {
+        while (buffer.remaining() >= HEADER_LENGTH) {
+            int start = buffer.position();
+            int magic = buffer.getInt(start);
+            if (magic != MAGIC_NUMBER) {
+                logger.error("不识别的协议包: {}", magic);
+                throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+            }
+            int packageCode = buffer.getInt(start + 4);
+            if (packageCode != PackageType.REQUEST_PACK.getCode()) {
+                logger.error("不识别的数据包: {}", packageCode);
+                throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
+            }
+            int length = buffer.getInt(start + 20);
+            if (length < 0 || length > MAX_BODY_LENGTH) {
+                throw new RpcException(RpcError.UNKNOWN_PROTOCOL, "length:" + length);
+            }
+            if (buffer.remaining() < HEADER_LENGTH + length) {
+                //半包，等待后续数据
+                return;
+            }
+            int serializerCode = buffer.getInt(start + 8);
+            CommonSerializer deserializer = CommonSerializer.getByCode(serializerCode);
+            if (deserializer == null) {
+                logger.error("不识别的反序列化器: {}", serializerCode);
+                throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
+            }
+            long requestId = buffer.getLong(start + 12);
+            byte[] body = new byte[length];
+            buffer.position(start + HEADER_LENGTH);
+            buffer.get(body);
+            RpcRequest rpcRequest = (RpcRequest) deserializer.deserialize(body, RpcRequest.class);
+            rpcRequest.setRequestId(requestId);
+            handle(rpcRequest);
+        }
+    }
+
+    private void handle(RpcRequest rpcRequest) {
+        //如果收到心跳包就不做处理
+        if (rpcRequest.getHeartBeat()) {
+            return;
+        }
+        MethodInvoker invoker = methodIdTable.resolve(rpcRequest);
+        try {
+            dispatcher.dispatch(rpcRequest, () -> invoke(rpcRequest, invoker));
+        } catch (RejectedExecutionException e) {
+            logger.warn("服务端繁忙，拒绝请求: {}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            send(RpcResponse.fail(ResponseCode.SERVER_BUSY, rpcRequest.getRequestId()));
+        }
+    }
+
+    private void invoke(RpcRequest rpcRequest, MethodInvoker invoker) {
+        CompletableFuture<RpcResponse<Object>> resultFuture;
+        try {
+            resultFuture = requestHandler.handleAsync(rpcRequest, invoker);
+        } catch (RuntimeException e) {
+            logger.error("处理请求时有错误发生: {}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+            send(RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId()));
+            return;
+        }
+        if (resultFuture.isDone()) {
+            send(resultFuture.join());
+        } else {
+            resultFuture.thenAccept(this::send);
+        }
+    }
+
+    /**
+     * 编码响应并交给Reactor写出，可以在任意线程中调用
+     */
+    void send(RpcResponse<?> rpcResponse) {
+        if (closed) {
+            logger.error("连接已关闭，丢弃响应: {}", rpcResponse.getRequestId());
+            return;
+        }
+        byte[] body = serializer.serialize(rpcResponse);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + body.length);
+        frame.putInt(MAGIC_NUMBER)
+                .putInt(PackageType.RESPONSE_PACK.getCode())
+                .putInt(serializer.getCode())
+                .putLong(rpcResponse.getRequestId())
+                .putInt(body.length)
+                .put(body)
+                .flip();
+        writeQueue.offer(frame);
+        if (writeScheduled.compareAndSet(false, true)) {
+            reactor.scheduleWrite(this);
+        }
+    }
+
+    /**
+     * 把写队列中的响应尽量多地打包进共享的堆外缓冲区后一次写出，写不完的部分留给下次OP_WRITE
+     */
+    void flush(ByteBuffer writeBuffer) {
+        //先清除标记再取队列，之后新加入的响应会重新排队，不会被遗漏
+        writeScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        try {
+            while (true) {
+                writeBuffer.clear();
+                if (pendingWrite != null) {
+                    fill(writeBuffer, pendingWrite);
+                    if (!pendingWrite.hasRemaining()) {
+                        pendingWrite = null;
+                    }
+                }
+                ByteBuffer frame;
+                while (writeBuffer.hasRemaining() && pendingWrite == null && (frame = writeQueue.poll()) != null) {
+                    fill(writeBuffer, frame);
+                    if (frame.hasRemaining()) {
+                        pendingWrite = frame;
+                    }
+                }
+                writeBuffer.flip();
+                if (!writeBuffer.hasRemaining()) {
+                    //全部写完，不再关注可写事件
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                channel.write(writeBuffer);
+                if (writeBuffer.hasRemaining()) {
+                    //socket发送缓冲区已满，没写出去的数据退回到连接自己的缓冲区，等待可写事件
+                    ByteBuffer rest = ByteBuffer.allocate(writeBuffer.remaining() + (pendingWrite == null ? 0 : pendingWrite.remaining()));
+                    rest.put(writeBuffer);
+                    if (pendingWrite != null) {
+                        rest.put(pendingWrite);
+                    }
+                    rest.flip();
+                    pendingWrite = rest;
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("写出响应时有错误发生，关闭连接: {}", e.toString());
+            close();
+        }
+    }
+
+    //从src中拷贝尽可能多的数据到dst
+    private static void fill(ByteBuffer dst, ByteBuffer src) {
+        if (src.remaining() <= dst.remaining()) {
+            dst.put(src);
+        } else {
+            ByteBuffer slice = src.duplicate();
+            slice.limit(src.position() + dst.remaining());
+            dst.put(slice);
+            src.position(slice.position());
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        writeQueue.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("关闭连接时有错误发生: {}", e.toString());
+        }
+    }
+}
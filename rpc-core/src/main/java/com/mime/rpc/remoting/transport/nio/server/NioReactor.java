@@ -0,0 +1,141 @@
+package com.mime.rpc.remoting.transport.nio.server;
+
+import com.mime.rpc.remoting.dispatcher.Dispatcher;
+import com.mime.rpc.remoting.handler.RequestHandler;
+import com.mime.rpc.serializer.CommonSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reactor线程，一个Selector负责多个连接
+ * 连接的注册、有待写出数据的连接都通过队列交给Reactor线程处理，Selector只在Reactor线程中操作
+ * 读写都使用Reactor内共享的堆外缓冲区，连接本身只在有半包或写不完的数据时才持有堆内缓冲区，空闲连接几乎不占内存
+ */
+class NioReactor implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioReactor.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final RequestHandler requestHandler;
+    private final CommonSerializer serializer;
+    private final Dispatcher dispatcher;
+    //等待注册的新连接
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    //有数据待写出的连接
+    private final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    //读写共用的堆外缓冲区，只在Reactor线程中使用
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private volatile Thread thread;
+
+    NioReactor(RequestHandler requestHandler, CommonSerializer serializer, Dispatcher dispatcher) throws IOException {
+        this.selector = Selector.open();
+        this.requestHandler = requestHandler;
+        this.serializer = serializer;
+        this.dispatcher = dispatcher;
+    }
+
+    void register(SocketChannel channel) {
+        pendingChannels.offer(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * 连接有新的待写出数据，可以在任意线程中调用
+     */
+    void scheduleWrite(NioConnection connection) {
+        pendingWrites.offer(connection);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    boolean inReactor() {
+        return Thread.currentThread() == thread;
+    }
+
+    void close() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.warn("关闭Selector时有错误发生: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        try {
+            while (selector.isOpen()) {
+                //单次处理中的错误只记录下来，Reactor线程不能退出，否则它负责的所有连接都不再被处理
+                try {
+                    processSelectedKeys();
+                } catch (IOException e) {
+                    logger.error("Reactor运行时有错误发生:", e);
+                }
+                registerPendingChannels();
+                flushPendingWrites();
+            }
+        } catch (ClosedSelectorException e) {
+            logger.info("Reactor已关闭");
+        }
+    }
+
+    private void processSelectedKeys() throws IOException {
+        selector.select();
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            NioConnection connection = (NioConnection) key.attachment();
+            if (!key.isValid()) {
+                connection.close();
+                continue;
+            }
+            if (key.isReadable()) {
+                connection.read(readBuffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush(writeBuffer);
+            }
+        }
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(this, channel, key, requestHandler, serializer, dispatcher));
+            } catch (IOException e) {
+                logger.error("注册连接时有错误发生:", e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    //连接本来就要丢弃
+                }
+            }
+        }
+    }
+
+    private void flushPendingWrites() {
+        NioConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            connection.flush(writeBuffer);
+        }
+    }
+}
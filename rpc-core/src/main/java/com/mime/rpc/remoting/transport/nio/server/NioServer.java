@@ -0,0 +1,65 @@
+package com.mime.rpc.remoting.transport.nio.server;
+
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.hook.ShutdownHook;
+import com.mime.rpc.provider.ServiceProviderImpl;
+import com.mime.rpc.remoting.handler.RequestHandler;
+import com.mime.rpc.remoting.transport.AbstractRpcServer;
+import com.mime.rpc.serializer.CommonSerializer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 基于JDK NIO Selector的服务提供侧，只依赖JDK，不需要Netty
+ * 主线程阻塞接收连接，按轮询分给若干个Reactor线程（server.nio.reactors），每个Reactor用一个Selector负责多个连接的读写
+ * 帧格式与Netty、Socket方式完全相同，三种客户端都可以直接调用；业务方法的执行同样交给配置的派发策略
+ */
+public class NioServer extends AbstractRpcServer {
+
+    private final CommonSerializer serializer;
+    private final RequestHandler requestHandler = new RequestHandler();
+
+    public NioServer() {
+        this(DEFAULT_SERIALIZER);
+    }
+
+    public NioServer(Integer serializer) {
+        this.serviceRegistry = RpcConfig.getServiceRegistry();
+        this.serviceProvider = new ServiceProviderImpl();
+        this.serializer = CommonSerializer.getByCode(serializer);
+        scanServices();
+    }
+
+    @Override
+    public void start() {
+        int reactorCount = RpcConfig.getNioReactors();
+        NioReactor[] reactors = new NioReactor[reactorCount];
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            for (int i = 0; i < reactorCount; i++) {
+                reactors[i] = new NioReactor(requestHandler, serializer, RpcConfig.getDispatcher());
+                new Thread(reactors[i], "nio-rpc-reactor-" + i).start();
+            }
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            logger.info("服务器启动……");
+            ShutdownHook.getShutdownHook().addClearAllHook();
+            int next = 0;
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                logger.info("消费者连接: {}", channel.getRemoteAddress());
+                reactors[next].register(channel);
+                next = (next + 1) % reactorCount;
+            }
+        } catch (IOException e) {
+            logger.error("服务器启动时有错误发生:", e);
+        } finally {
+            for (NioReactor reactor : reactors) {
+                if (reactor != null) {
+                    reactor.close();
+                }
+            }
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package com.mime.rpc.remoting.transport.socket.client;
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
 import com.mime.rpc.enumeration.ResponseCode;
 import com.mime.rpc.enumeration.RpcError;
 import com.mime.rpc.exception.RpcException;
-import com.mime.rpc.factory.SingletonFactory;
+import com.mime.rpc.factory.ThreadPoolFactory;
+import com.mime.rpc.loadbalancer.EndpointStats;
 import com.mime.rpc.loadbalancer.LoadBalancer;
 import com.mime.rpc.loadbalancer.RandomLoadBalancer;
 import com.mime.rpc.registry.ServiceDiscovery;
-import com.mime.rpc.registry.nacos.NacosServiceDiscovery;
 import com.mime.rpc.remoting.transport.RpcClient;
+import com.mime.rpc.remoting.transport.socket.client.SocketConnectionPool.PooledSocket;
 import com.mime.rpc.remoting.transport.socket.util.ObjectReader;
 import com.mime.rpc.remoting.transport.socket.util.ObjectWriter;
 import com.mime.rpc.serializer.CommonSerializer;
@@ -19,14 +21,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Socket方式远程方法调用的消费者（BIO 客户端）
+ * 连接从长连接池中借出，一次请求独占一条连接，完成后归还，见{@link SocketConnectionPool}
  */
 public class SocketClient implements RpcClient {
 
@@ -37,43 +43,124 @@ public class SocketClient implements RpcClient {
     //在客户端设置序列化方式
     private final CommonSerializer serializer;
 
+    //连接借出期间由当前请求独占，请求号在客户端内递增即可
+    private final AtomicLong requestIdGenerator = new AtomicLong();
+
+    //每个服务端地址的长连接池
+    private final SocketConnectionPool connectionPool = new SocketConnectionPool();
+
+    //异步调用的执行器，开启虚拟线程模式时为虚拟线程执行器，否则为null，在调用线程中执行
+    private final ExecutorService asyncExecutor;
+
     public SocketClient() {
         this(DEFAULT_SERIALIZER);
     }
     public SocketClient(Integer serializer) {
-        this.serviceDiscovery = SingletonFactory.getInstance(NacosServiceDiscovery.class);
+        this.serviceDiscovery = RpcConfig.getServiceDiscovery();
         this.serializer = CommonSerializer.getByCode(serializer);
+        this.asyncExecutor = RpcConfig.isSocketVirtualThreads()
+                ? ThreadPoolFactory.createVirtualThreadExecutor("socket-rpc-client-virtual") : null;
+    }
+
+    /**
+     * 异步发送请求
+     * BIO方式的读写是阻塞的，开启虚拟线程模式时在虚拟线程中完成请求，阻塞时只挂起虚拟线程，
+     * 大量并发的异步调用不需要对应数量的平台线程；否则在调用线程中完成请求后返回已完成的future
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<RpcResponse<Object>> sendRequestAsync(RpcRequest rpcRequest, long timeoutMillis) {
+        if (asyncExecutor != null) {
+            return CompletableFuture.supplyAsync(() -> (RpcResponse<Object>) sendRequest(rpcRequest, timeoutMillis), asyncExecutor);
+        }
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        try {
+            resultFuture.complete((RpcResponse<Object>) sendRequest(rpcRequest, timeoutMillis));
+        } catch (RuntimeException e) {
+            resultFuture.completeExceptionally(e);
+        }
+        return resultFuture;
     }
 
     @Override
-    public Object sendRequest(RpcRequest rpcRequest) {
+    public Object sendRequest(RpcRequest rpcRequest, long timeoutMillis) {
         if(serializer == null) {
             logger.error("未设置序列化器");
             throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
         }
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        try (Socket socket = new Socket()) {
-            socket.connect(inetSocketAddress);
-            OutputStream outputStream = socket.getOutputStream();
-            InputStream inputStream = socket.getInputStream();
-            //向socket写出自定义协议的二进制数据
-            ObjectWriter.writeObject(outputStream, rpcRequest, serializer);
-            //读取响应
-            Object obj = ObjectReader.readObject(inputStream);
-            RpcResponse rpcResponse = (RpcResponse) obj;
-            if (rpcResponse == null) {
-                logger.error("服务调用失败，service：{}", rpcRequest.getInterfaceName());
-                throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, " service:" + rpcRequest.getInterfaceName());
-            }
-            if (rpcResponse.getStatusCode() == null || rpcResponse.getStatusCode() != ResponseCode.SUCCESS.getCode()) {
-                logger.error("调用服务失败, service: {}, response:{}", rpcRequest.getInterfaceName(), rpcResponse);
-                throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, " service:" + rpcRequest.getInterfaceName());
+        rpcRequest.setRequestId(requestIdGenerator.incrementAndGet());
+        //BIO下用连接超时和读超时来实现请求超时，0表示一直阻塞
+        int timeout = timeoutMillis > 0 ? (int) Math.min(timeoutMillis, Integer.MAX_VALUE) : 0;
+        //记录实例的活跃请求数与响应时间，供按负载选择实例的负载均衡器使用
+        EndpointStats stats = EndpointStats.of(inetSocketAddress);
+        long startNanos = stats.begin();
+        boolean success = false;
+        RpcResponse<?> rpcResponse;
+        try {
+            rpcResponse = exchange(inetSocketAddress, rpcRequest, timeout, timeoutMillis);
+            success = true;
+        } finally {
+            stats.end(startNanos, success);
+        }
+        if (rpcResponse == null) {
+            logger.error("服务调用失败，service：{}", rpcRequest.getInterfaceName());
+            throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, " service:" + rpcRequest.getInterfaceName());
+        }
+        if (rpcResponse.getStatusCode() == null || rpcResponse.getStatusCode() != ResponseCode.SUCCESS.getCode()) {
+            logger.error("调用服务失败, service: {}, response:{}", rpcRequest.getInterfaceName(), rpcResponse);
+            throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, " service:" + rpcRequest.getInterfaceName()
+                    + ", " + rpcResponse.getMessage());
+        }
+        RpcMessageChecker.check(rpcRequest, rpcResponse);
+        return rpcResponse;
+    }
+
+    //在连接池的连接上发送请求并读取响应，复用的连接失效时换一条新连接重试一次
+    private RpcResponse<?> exchange(InetSocketAddress inetSocketAddress, RpcRequest rpcRequest, int timeout, long timeoutMillis) {
+        PooledSocket pooledSocket = connectionPool.borrow(inetSocketAddress);
+        boolean reused = pooledSocket != null;
+        RpcResponse<?> rpcResponse;
+        while (true) {
+            try {
+                if (pooledSocket == null) {
+                    pooledSocket = connectionPool.connect(inetSocketAddress, timeout);
+                }
+                pooledSocket.socket().setSoTimeout(timeout);
+                //向socket写出自定义协议的二进制数据
+                ObjectWriter.writeObject(pooledSocket.outputStream(), rpcRequest, serializer);
+                //读取响应
+                rpcResponse = (RpcResponse<?>) ObjectReader.readObject(pooledSocket.inputStream());
+                break;
+            } catch (SocketTimeoutException e) {
+                //迟到的响应会错乱连接上的数据，超时的连接不能再复用
+                if (pooledSocket != null) {
+                    pooledSocket.close();
+                }
+                logger.error("调用超时, service: {}, timeout: {}ms", rpcRequest.getInterfaceName(), timeoutMillis);
+                throw new RpcException(RpcError.REQUEST_TIMEOUT, " service:" + rpcRequest.getInterfaceName());
+            } catch (EOFException | SocketException e) {
+                if (pooledSocket != null) {
+                    pooledSocket.close();
+                }
+                if (reused) {
+                    //复用的空闲连接可能已被服务端关闭，换一条新连接重试一次
+                    logger.debug("复用的连接已失效，重新连接: {}", e.toString());
+                    reused = false;
+                    pooledSocket = null;
+                    continue;
+                }
+                logger.error("调用时有错误发生：", e);
+                throw new RpcException("服务调用失败: ", e);
+            } catch (IOException | RuntimeException e) {
+                if (pooledSocket != null) {
+                    pooledSocket.close();
+                }
+                logger.error("调用时有错误发生：", e);
+                throw new RpcException("服务调用失败: ", e);
             }
-            RpcMessageChecker.check(rpcRequest, rpcResponse);
-            return rpcResponse;
-        } catch (IOException e) {
-            logger.error("调用时有错误发生：", e);
-            throw new RpcException("服务调用失败: ", e);
         }
+        //响应已完整读出，连接可以归还复用
+        connectionPool.release(inetSocketAddress, pooledSocket);
+        return rpcResponse;
     }
 }
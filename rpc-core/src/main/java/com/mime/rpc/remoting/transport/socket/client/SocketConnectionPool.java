@@ -0,0 +1,145 @@
+package com.mime.rpc.remoting.transport.socket.client;
+
+import com.mime.rpc.config.RpcConfig;
+import com.mime.rpc.remoting.transport.socket.util.ObjectReader;
+import com.mime.rpc.remoting.transport.socket.util.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BIO客户端的长连接池
+ * 每个服务端地址保留若干条空闲连接（client.socket.pool.size），请求时借出一条独占使用，完成后归还，
+ * 避免每次调用都经历一次TCP握手并在本地留下TIME_WAIT状态的连接
+ * 空闲超过 client.socket.idle.timeout 的连接不再复用，该值应小于服务端的空闲超时，以免借到已被服务端关闭的连接
+ */
+public class SocketConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketConnectionPool.class);
+
+    private final Map<InetSocketAddress, IdleConnections> idleConnections = new ConcurrentHashMap<>();
+    private final int maxIdlePerEndpoint;
+    private final long idleTimeoutNanos;
+
+    public SocketConnectionPool() {
+        maxIdlePerEndpoint = RpcConfig.getSocketPoolSize();
+        idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(RpcConfig.getSocketIdleTimeout());
+    }
+
+    /**
+     * 借出一条空闲连接，没有可用的空闲连接时返回null
+     */
+    public PooledSocket borrow(InetSocketAddress inetSocketAddress) {
+        IdleConnections connections = idleConnections.get(inetSocketAddress);
+        if (connections == null) {
+            return null;
+        }
+        PooledSocket pooledSocket;
+        //后进先出，优先复用最近用过的连接，多余的连接自然空闲到过期
+        while ((pooledSocket = connections.pollFirst()) != null) {
+            if (System.nanoTime() - pooledSocket.lastUsed < idleTimeoutNanos && !pooledSocket.socket.isClosed()) {
+                return pooledSocket;
+            }
+            pooledSocket.close();
+        }
+        return null;
+    }
+
+    /**
+     * 新建连接
+     */
+    public PooledSocket connect(InetSocketAddress inetSocketAddress, int timeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(inetSocketAddress, timeoutMillis);
+            return new PooledSocket(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还一条完整完成了请求响应的连接，空闲连接已满时直接关闭
+     */
+    public void release(InetSocketAddress inetSocketAddress, PooledSocket pooledSocket) {
+        IdleConnections connections = idleConnections.computeIfAbsent(inetSocketAddress, address -> new IdleConnections());
+        if (connections.size.get() >= maxIdlePerEndpoint) {
+            pooledSocket.close();
+            return;
+        }
+        pooledSocket.lastUsed = System.nanoTime();
+        connections.offerFirst(pooledSocket);
+    }
+
+    /**
+     * 单个地址的空闲连接，单独计数以免ConcurrentLinkedDeque.size()遍历整个队列
+     */
+    private static final class IdleConnections {
+
+        private final Deque<PooledSocket> deque = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        PooledSocket pollFirst() {
+            PooledSocket pooledSocket = deque.pollFirst();
+            if (pooledSocket != null) {
+                size.decrementAndGet();
+            }
+            return pooledSocket;
+        }
+
+        void offerFirst(PooledSocket pooledSocket) {
+            size.incrementAndGet();
+            deque.offerFirst(pooledSocket);
+        }
+    }
+
+    /**
+     * 池化的连接，缓存其带缓冲的输入输出流，缓冲区随连接一起复用
+     */
+    public static final class PooledSocket {
+
+        private final Socket socket;
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+        private long lastUsed;
+
+        private PooledSocket(Socket socket) throws IOException {
+            this.socket = socket;
+            this.inputStream = ObjectReader.wrap(socket.getInputStream());
+            this.outputStream = ObjectWriter.wrap(socket.getOutputStream());
+        }
+
+        public Socket socket() {
+            return socket;
+        }
+
+        public InputStream inputStream() {
+            return inputStream;
+        }
+
+        public OutputStream outputStream() {
+            return outputStream;
+        }
+
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("关闭连接时有错误发生: {}", e.toString());
+            }
+        }
+    }
+}
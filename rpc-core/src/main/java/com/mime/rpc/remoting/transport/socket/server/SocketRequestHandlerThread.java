@@ -1,7 +1,9 @@
 package com.mime.rpc.remoting.transport.socket.server;
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.entity.RpcResponse;
+import com.mime.rpc.remoting.handler.MethodIdTable;
 import com.mime.rpc.remoting.handler.RequestHandler;
 import com.mime.rpc.remoting.transport.socket.util.ObjectReader;
 import com.mime.rpc.remoting.transport.socket.util.ObjectWriter;
@@ -9,13 +11,16 @@ import com.mime.rpc.serializer.CommonSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 /**
  * 处理RpcRequest的工作线程  继承了Runnable接口，会被当作一个任务被线程池执行
+ * 一个任务负责一个连接，在连接上循环读取请求、写回响应，直到客户端关闭连接
  */
 public class SocketRequestHandlerThread implements Runnable {
 
@@ -33,12 +38,31 @@ public class SocketRequestHandlerThread implements Runnable {
 
     @Override
     public void run() {
-        try (InputStream inputStream = socket.getInputStream();
-             OutputStream outputStream = socket.getOutputStream()) {
-            RpcRequest rpcRequest = (RpcRequest) ObjectReader.readObject(inputStream);
-            //调用具体方法
-            RpcResponse<Object> result = requestHandler.handle(rpcRequest);
-            ObjectWriter.writeObject(outputStream, result, serializer);
+        try (Socket socket = this.socket;
+             //带缓冲的流在连接的整个生命周期内复用
+             InputStream inputStream = ObjectReader.wrap(socket.getInputStream());
+             OutputStream outputStream = ObjectWriter.wrap(socket.getOutputStream())) {
+            //客户端长时间没有新请求时关闭连接，回收线程
+            socket.setSoTimeout(RpcConfig.getSocketServerIdleTimeout());
+            //长连接上连续的请求响应不能被Nagle算法与延迟确认互相等待拖慢
+            socket.setTcpNoDelay(true);
+            //连接上的方法编号表，请求在本线程中按顺序处理
+            MethodIdTable methodIdTable = requestHandler.newMethodIdTable();
+            while (true) {
+                RpcRequest rpcRequest;
+                try {
+                    rpcRequest = (RpcRequest) ObjectReader.readObject(inputStream);
+                } catch (EOFException e) {
+                    //客户端关闭了连接
+                    break;
+                } catch (SocketTimeoutException e) {
+                    logger.debug("连接空闲超时，关闭连接: {}", socket.getRemoteSocketAddress());
+                    break;
+                }
+                //调用具体方法
+                RpcResponse<Object> result = requestHandler.handleAsync(rpcRequest, methodIdTable.resolve(rpcRequest)).join();
+                ObjectWriter.writeObject(outputStream, result, serializer);
+            }
         } catch (IOException e) {
             logger.error("调用或发送时有错误发生：", e);
         }
@@ -2,10 +2,10 @@ package com.mime.rpc.remoting.transport.socket.server;
 
 
 
+import com.mime.rpc.config.RpcConfig;
 import com.mime.rpc.factory.ThreadPoolFactory;
 import com.mime.rpc.hook.ShutdownHook;
 import com.mime.rpc.provider.ServiceProviderImpl;
-import com.mime.rpc.registry.nacos.NacosServiceRegistry;
 import com.mime.rpc.remoting.handler.RequestHandler;
 import com.mime.rpc.remoting.transport.AbstractRpcServer;
 import com.mime.rpc.serializer.CommonSerializer;
@@ -15,9 +15,14 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Socket方式远程方法调用的提供者（服务端）
+ * 每个连接由一个线程负责，连接上可以连续发送多个请求
+ * 配置 socket.virtual.threads=true 时每个连接使用一个虚拟线程（JDK 21及以上），阻塞读写只占用很少的资源，
+ * 并发连接数不再受线程池大小的限制；否则每个连接独占线程池中的一个线程，线程池没有等待队列，
+ * 同时服务的连接数达到 server.socket.max.connections 时新连接在accept之后立即被关闭，而不是排队等待
  */
 public class SocketServer extends AbstractRpcServer {
 
@@ -30,8 +35,13 @@ public class SocketServer extends AbstractRpcServer {
     }
 
     public SocketServer(Integer serializer) {
-        threadPool = ThreadPoolFactory.createDefaultThreadPool("socket-rpc-server");
-        this.serviceRegistry = new NacosServiceRegistry();
+        ExecutorService virtualThreadExecutor = RpcConfig.isSocketVirtualThreads()
+                ? ThreadPoolFactory.createVirtualThreadExecutor("socket-rpc-server-virtual") : null;
+        threadPool = virtualThreadExecutor != null
+                ? virtualThreadExecutor
+                //连接会一直占用线程直到空闲超时，不能排队等待，线程用完时直接拒绝新连接
+                : ThreadPoolFactory.createDirectHandoffThreadPool("socket-rpc-server", RpcConfig.getSocketServerMaxConnections(), false);
+        this.serviceRegistry = RpcConfig.getServiceRegistry();
         this.serviceProvider = new ServiceProviderImpl();
         this.serializer = CommonSerializer.getByCode(serializer);
         scanServices();
@@ -46,7 +56,13 @@ public class SocketServer extends AbstractRpcServer {
             Socket socket;
             while ((socket = serverSocket.accept()) != null) {
                 logger.info("消费者连接: {}:{}", socket.getInetAddress(), socket.getPort());
-                threadPool.execute(new SocketRequestHandlerThread(socket, requestHandler, serializer));
+                try {
+                    threadPool.execute(new SocketRequestHandlerThread(socket, requestHandler, serializer));
+                } catch (RejectedExecutionException e) {
+                    //线程池已满，拒绝该连接而不是让整个服务端退出
+                    logger.warn("服务端繁忙，拒绝连接: {}:{}", socket.getInetAddress(), socket.getPort());
+                    socket.close();
+                }
             }
             threadPool.shutdown();
         } catch (IOException e) {
@@ -9,27 +9,47 @@ import com.mime.rpc.serializer.CommonSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
  * Socket方式从输入流中读取字节并反序列化
+ * 帧格式与Netty的MessageDecoder一致，各字段均为大端字节序（DataInputStream的字节序）
+ * 每个字段都按readFully语义读满，一次read没有读够时会继续读取，大数据包不会被截断
  */
 public class ObjectReader {
 
     private static final Logger logger = LoggerFactory.getLogger(ObjectReader.class);
     private static final int MAGIC_NUMBER = 0x77466258;
+    //消息体的最大长度，与MessageDecoder的最大帧长度保持一致，防止错误的长度字段导致分配超大数组
+    private static final int MAX_BODY_LENGTH = 8 * 1024 * 1024;
 
+    private ObjectReader() {
+    }
+
+    /**
+     * 包装连接的输入流，连接建立后调用一次，之后的每次readObject都使用返回的流
+     * 帧头的各个字段从缓冲区中读取，小数据包通常一次系统调用就能读完
+     */
+    public static DataInputStream wrap(InputStream in) {
+        return new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * @param in 最好是{@link #wrap(InputStream)}包装过的流，否则每个帧头字段都可能产生一次系统调用
+     * @throws EOFException 对端关闭了连接
+     */
     public static Object readObject(InputStream in) throws IOException {
-        byte[] numberBytes = new byte[4];
-        in.read(numberBytes);
-        int magic = bytesToInt(numberBytes);
+        DataInputStream dataInput = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+        int magic = dataInput.readInt();
         if (magic != MAGIC_NUMBER) {
             logger.error("不识别的协议包: {}", magic);
             throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
         }
-        in.read(numberBytes);
-        int packageCode = bytesToInt(numberBytes);
+        int packageCode = dataInput.readInt();
         Class<?> packageClass;
         if (packageCode == PackageType.REQUEST_PACK.getCode()) {
             packageClass = RpcRequest.class;
@@ -39,27 +59,27 @@ public class ObjectReader {
             logger.error("不识别的数据包: {}", packageCode);
             throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
         }
-        in.read(numberBytes);
-        int serializerCode = bytesToInt(numberBytes);
+        int serializerCode = dataInput.readInt();
         CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
         if (serializer == null) {
             logger.error("不识别的反序列化器: {}", serializerCode);
             throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
         }
-        in.read(numberBytes);
-        int length = bytesToInt(numberBytes);
+        long requestId = dataInput.readLong();
+        int length = dataInput.readInt();
+        if (length < 0 || length > MAX_BODY_LENGTH) {
+            logger.error("数据包长度不合法: {}", length);
+            throw new RpcException(RpcError.UNKNOWN_PROTOCOL, "length:" + length);
+        }
         byte[] bytes = new byte[length];
-        in.read(bytes);
-        return serializer.deserialize(bytes, packageClass);
-    }
-
-    //字节转int
-    public static int bytesToInt(byte[] src) {
-        int value;
-        value = (src[0] & 0xFF)
-                | ((src[1] & 0xFF)<<8)
-                | ((src[2] & 0xFF)<<16)
-                | ((src[3] & 0xFF)<<24);
-        return value;
+        dataInput.readFully(bytes);
+        Object obj = serializer.deserialize(bytes, packageClass);
+        //请求号只在帧头中传输，反序列化后再填回对象
+        if (obj instanceof RpcRequest) {
+            ((RpcRequest) obj).setRequestId(requestId);
+        } else {
+            ((RpcResponse<?>) obj).setRequestId(requestId);
+        }
+        return obj;
     }
 }
@@ -3,41 +3,55 @@ package com.mime.rpc.remoting.transport.socket.util;
 
 
 import com.mime.rpc.entity.RpcRequest;
+import com.mime.rpc.entity.RpcResponse;
 import com.mime.rpc.enumeration.PackageType;
 import com.mime.rpc.serializer.CommonSerializer;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 /**
  * 向socket写入封装协议的数据包
+ * 帧格式与Netty的CommonEncoder一致，各字段均为大端字节序（DataOutputStream的字节序）
  */
 public class ObjectWriter {
 
     private static final int MAGIC_NUMBER = 0x77466258;
 
+    private ObjectWriter() {
+    }
+
+    /**
+     * 包装连接的输出流，连接建立后调用一次，之后的每次writeObject都使用返回的流
+     * 帧头和消息体先写入缓冲区，最后一次flush，小数据包只需要一次系统调用
+     */
+    public static DataOutputStream wrap(OutputStream out) {
+        return new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * @param outputStream 最好是{@link #wrap(OutputStream)}包装过的流，否则会临时包装一个缓冲流
+     */
     public static void writeObject(OutputStream outputStream, Object object, CommonSerializer serializer) throws IOException {
+        DataOutputStream dataOutput = outputStream instanceof DataOutputStream
+                ? (DataOutputStream) outputStream : wrap(outputStream);
+        byte[] bytes = serializer.serialize(object);
         //写入魔数
-        outputStream.write(intToBytes(MAGIC_NUMBER));
+        dataOutput.writeInt(MAGIC_NUMBER);
         if (object instanceof RpcRequest) {
-            outputStream.write(intToBytes(PackageType.REQUEST_PACK.getCode()));
+            dataOutput.writeInt(PackageType.REQUEST_PACK.getCode());
         } else {
-            outputStream.write(intToBytes(PackageType.RESPONSE_PACK.getCode()));
+            dataOutput.writeInt(PackageType.RESPONSE_PACK.getCode());
         }
-        outputStream.write(intToBytes(serializer.getCode()));
-        byte[] bytes = serializer.serialize(object);
-        outputStream.write(intToBytes(bytes.length));
-        outputStream.write(bytes);
-        outputStream.flush();
-    }
-
-    //int 转 byte 数组
-    private static byte[] intToBytes(int value) {
-        byte[] des = new byte[4];
-        des[3] =  (byte) ((value>>24) & 0xFF);
-        des[2] =  (byte) ((value>>16) & 0xFF);
-        des[1] =  (byte) ((value>>8) & 0xFF);
-        des[0] =  (byte) (value & 0xFF);
-        return des;
+        dataOutput.writeInt(serializer.getCode());
+        //请求号写在帧头中
+        long requestId = object instanceof RpcRequest
+                ? ((RpcRequest) object).getRequestId() : ((RpcResponse<?>) object).getRequestId();
+        dataOutput.writeLong(requestId);
+        dataOutput.writeInt(bytes.length);
+        dataOutput.write(bytes);
+        dataOutput.flush();
     }
 }
@@ -1,10 +1,6 @@
 package com.mime.rpc.serializer;
 
-import com.mime.rpc.serializer.hessian.HessianSerializer;
-import com.mime.rpc.serializer.json.GsonSerializer;
-import com.mime.rpc.serializer.json.JsonSerializer;
-import com.mime.rpc.serializer.kryo.KryoSerializer;
-import com.mime.rpc.serializer.protobuf.ProtobufSerializer;
+import io.netty.buffer.ByteBuf;
 
 /**
  * 序列化就是把对象转换为二进制数据，反序列化就把二进制数据转换为对象
@@ -21,29 +17,42 @@ public interface CommonSerializer {
     Integer DEFAULT_SERIALIZER = KRYO_SERIALIZER;
 
     /**
-     * 应当单例设计---这里先不管了
+     * 返回的是全局共享的单例，实现类必须保证线程安全，见{@link SerializerRegistry}
      */
     static CommonSerializer getByCode(int code) {
-        switch (code) {
-            case 0:
-                return new KryoSerializer();
-            case 1:
-                return new JsonSerializer();
-            case 2:
-                return new HessianSerializer();
-            case 3:
-                return new ProtobufSerializer();
-            case 4:
-                return new GsonSerializer();
-            default:
-                return null;
-        }
+        return SerializerRegistry.get(code);
     }
 
     byte[] serialize(Object obj);
 
+    /**
+     * 将对象直接序列化写入Netty的ByteBuf（从其writerIndex开始追加）
+     * 默认实现仍会先生成byte[]再拷贝，能够流式输出的序列化器应覆盖此方法，使每条消息只序列化一次且不产生堆上的中间数组
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
     Object deserialize(byte[] bytes, Class<?> clazz);
 
+    /**
+     * 直接从Netty的ByteBuf中反序列化，in的可读部分即为完整的消息体，读取完成后会被全部消费
+     * 默认实现仍会先拷贝出一个byte[]，能够直接读取缓冲区的序列化器应覆盖此方法，避免解码时每条消息的额外分配
+     */
+    default Object deserialize(ByteBuf in, Class<?> clazz) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        return deserialize(bytes, clazz);
+    }
+
     int getCode();
 
+    /**
+     * 反序列化请求时能否不依赖paramTypes还原出参数的真实类型
+     * 不能的话（例如JSON需要按参数类型二次转换参数）客户端始终发送完整的请求，不使用只带方法编号的精简请求
+     */
+    default boolean supportsCompactRequest() {
+        return true;
+    }
+
 }
@@ -0,0 +1,68 @@
+package com.mime.rpc.serializer;
+
+import com.mime.rpc.serializer.hessian.HessianSerializer;
+import com.mime.rpc.serializer.json.GsonSerializer;
+import com.mime.rpc.serializer.json.JsonSerializer;
+import com.mime.rpc.serializer.kryo.KryoSerializer;
+import com.mime.rpc.serializer.protobuf.ProtobufSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * 序列化器注册表
+ * 所有序列化器都是线程安全的单例，按序列化编号存放在数组中，编解码时根据帧头中的编号直接下标取出
+ * 除内置的几种序列化器外，还可以通过SPI扩展：
+ * 在META-INF/services/com.mime.rpc.serializer.CommonSerializer文件中写上实现类的全限定类名即可，
+ * 实现类需要有无参构造器，getCode()返回的编号与内置序列化器相同时会覆盖内置实现
+ */
+public final class SerializerRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerializerRegistry.class);
+
+    //下标即序列化编号，初始化完成后不再修改
+    private static final CommonSerializer[] SERIALIZERS;
+
+    static {
+        List<CommonSerializer> serializers = new ArrayList<>();
+        serializers.add(new KryoSerializer());
+        serializers.add(new JsonSerializer());
+        serializers.add(new HessianSerializer());
+        serializers.add(new ProtobufSerializer());
+        serializers.add(new GsonSerializer());
+        //通过SPI加载用户自定义的序列化器
+        for (CommonSerializer serializer : ServiceLoader.load(CommonSerializer.class)) {
+            logger.info("加载自定义序列化器: {} 编号: {}", serializer.getClass().getName(), serializer.getCode());
+            serializers.add(serializer);
+        }
+        int maxCode = 0;
+        for (CommonSerializer serializer : serializers) {
+            if (serializer.getCode() < 0) {
+                throw new IllegalStateException("序列化编号不能为负数: " + serializer.getClass().getName());
+            }
+            maxCode = Math.max(maxCode, serializer.getCode());
+        }
+        CommonSerializer[] table = new CommonSerializer[maxCode + 1];
+        //后加入的覆盖先加入的，SPI实现可以替换同编号的内置实现
+        for (CommonSerializer serializer : serializers) {
+            table[serializer.getCode()] = serializer;
+        }
+        SERIALIZERS = table;
+    }
+
+    private SerializerRegistry() {
+    }
+
+    /**
+     * 根据编号获取序列化器，不存在时返回null
+     */
+    public static CommonSerializer get(int code) {
+        if (code < 0 || code >= SERIALIZERS.length) {
+            return null;
+        }
+        return SERIALIZERS[code];
+    }
+}
@@ -5,6 +5,9 @@ import com.caucho.hessian.io.HessianOutput;
 import com.mime.rpc.enumeration.SerializerCode;
 import com.mime.rpc.exception.SerializeException;
 import com.mime.rpc.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +50,19 @@ public class HessianSerializer implements CommonSerializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        //HessianOutput逐字节写入ByteBufOutputStream，即直接写进出站缓冲区
+        HessianOutput hessianOutput = new HessianOutput(new ByteBufOutputStream(out));
+        try {
+            hessianOutput.writeObject(obj);
+            hessianOutput.flush();
+        } catch (IOException e) {
+            logger.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        }
+    }
+
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
         HessianInput hessianInput = null;
@@ -61,6 +77,20 @@ public class HessianSerializer implements CommonSerializer {
         }
     }
 
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        //ByteBufInputStream直接读取缓冲区，不必再拷贝出一份byte[]
+        HessianInput hessianInput = new HessianInput(new ByteBufInputStream(in));
+        try {
+            return hessianInput.readObject();
+        } catch (IOException e) {
+            logger.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            hessianInput.close();
+        }
+    }
+
     @Override
     public int getCode() {
         return SerializerCode.valueOf("HESSIAN").getCode();
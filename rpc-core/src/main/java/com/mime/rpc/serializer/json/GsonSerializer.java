@@ -12,13 +12,21 @@ import java.nio.charset.StandardCharsets;
 //参数序列化有些问题
 public class GsonSerializer implements CommonSerializer {
 
+    //Gson实例是线程安全的，序列化器作为单例共享时也只需创建一次
+    private final Gson gson = new GsonBuilder().registerTypeAdapter(Class.class, new ClassCodec()).create();
+
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(Class.class, new ClassCodec()).create();
         String json = new String(bytes, StandardCharsets.UTF_8);
         return gson.fromJson(json, clazz);
     }
 
+    //JSON中不带参数对象的类型信息，请求必须携带paramTypes
+    @Override
+    public boolean supportsCompactRequest() {
+        return false;
+    }
+
     @Override
     public int getCode() {
         return SerializerCode.valueOf("GSON").getCode();
@@ -26,7 +34,6 @@ public class GsonSerializer implements CommonSerializer {
 
     @Override
     public byte[] serialize(Object object) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(Class.class, new ClassCodec()).create();
         String json = gson.toJson(object);
         return json.getBytes(StandardCharsets.UTF_8);
     }
@@ -6,10 +6,15 @@ import com.mime.rpc.entity.RpcRequest;
 import com.mime.rpc.enumeration.SerializerCode;
 import com.mime.rpc.exception.SerializeException;
 import com.mime.rpc.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * 使用JSON格式的序列化器--jackson库
@@ -18,7 +23,8 @@ public class JsonSerializer implements CommonSerializer {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonSerializer.class);
 
-    private ObjectMapper objectMapper = new ObjectMapper();
+    //ObjectMapper配置完成后是线程安全的
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     public byte[] serialize(Object obj) {
@@ -31,15 +37,39 @@ public class JsonSerializer implements CommonSerializer {
     }
 
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        try {
+            //jackson使用自身回收复用的缓冲区编码后直接写入ByteBuf
+            objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), obj);
+        } catch (IOException e) {
+            logger.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        }
+    }
+
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
         try {
             Object obj = objectMapper.readValue(bytes, clazz);
-            System.out.println("obj:"+obj);
             if (obj instanceof RpcRequest) {
                 obj = handleRequest(obj);
             }
-            System.out.println("obj1:"+obj);
+            return obj;
+        } catch (IOException e) {
+            logger.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        try {
+            //jackson直接从缓冲区流式解析，不必再拷贝出一份byte[]
+            Object obj = objectMapper.readValue((InputStream) new ByteBufInputStream(in), clazz);
+            if (obj instanceof RpcRequest) {
+                obj = handleRequest(obj);
+            }
             return obj;
         } catch (IOException e) {
             logger.error("序列化时有错误发生:", e);
@@ -69,6 +99,12 @@ public class JsonSerializer implements CommonSerializer {
         return rpcRequest;
     }
 
+    //参数数组需要借助paramTypes转换回真实类型，不能省略
+    @Override
+    public boolean supportsCompactRequest() {
+        return false;
+    }
+
     @Override
     public int getCode() {
         return SerializerCode.valueOf("JSON").getCode();
@@ -0,0 +1,104 @@
+package com.mime.rpc.serializer.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 有界、线程安全的Kryo对象池
+ * 每个池化对象都带有一个已配置好的Kryo引擎以及可复用的Input/Output，借出期间由借用线程独占
+ * 与ThreadLocal不同，池中对象不随线程的生命周期存活：池满时归还的对象直接丢弃交给GC，
+ * 超过阈值而扩容过的Output缓冲区也不会被保留，因此不会出现ThreadLocal那样的value泄露问题
+ */
+public class KryoPool {
+
+    //池容量上限
+    private static final int DEFAULT_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+    //Output初始缓冲区大小
+    private static final int OUTPUT_BUFFER_SIZE = 4096;
+    //归还时超过该大小的Output缓冲区不再保留，避免偶发的大消息长期占用内存
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<PooledKryo> pool;
+
+    public KryoPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public KryoPool(int capacity) {
+        this.pool = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * 借出一个Kryo，池为空时新建，不会阻塞调用线程
+     */
+    public PooledKryo borrow() {
+        PooledKryo pooledKryo = pool.poll();
+        return pooledKryo != null ? pooledKryo : new PooledKryo();
+    }
+
+    /**
+     * 归还Kryo，先断开对本次消息缓冲区的引用，池已满则直接丢弃
+     */
+    public void release(PooledKryo pooledKryo) {
+        pooledKryo.reset();
+        pool.offer(pooledKryo);
+    }
+
+    public static final class PooledKryo {
+
+        private final Kryo kryo;
+        private Output output;
+        private final Input input;
+        private final ByteBufferInput byteBufferInput;
+
+        private PooledKryo() {
+            kryo = new Kryo();
+            /*
+            //Kryo支持对类进行注册注册行为会给每一个Class编一个号码，编号从0开始（这样使得序列化大小更小，比起默认的全限定类名）
+            //但是，Kryo并不保证同一个Class每一次的注册的号码都相同，多个JVM、分布式下不要开启注册功能
+            kryo.register(RpcResponse.class);
+            kryo.register(RpcRequest.class);
+            kryo.setRegistrationRequired(true);
+            */
+            //对循环引用的检查支持（A依赖B B又依赖A），kryo默认会打开这个属性帮你检验循环引用情况，可以有效防止栈内存溢出
+            kryo.setReferences(true);
+            output = new Output(OUTPUT_BUFFER_SIZE, -1);
+            input = new Input();
+            byteBufferInput = new ByteBufferInput();
+        }
+
+        public Kryo kryo() {
+            return kryo;
+        }
+
+        public Output output() {
+            return output;
+        }
+
+        public Input input() {
+            return input;
+        }
+
+        public ByteBufferInput byteBufferInput() {
+            return byteBufferInput;
+        }
+
+        private void reset() {
+            input.setBuffer(EMPTY_BYTES);
+            byteBufferInput.setBuffer(EMPTY_BUFFER);
+            output.setOutputStream(null);
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                output = new Output(OUTPUT_BUFFER_SIZE, -1);
+            }
+        }
+    }
+}
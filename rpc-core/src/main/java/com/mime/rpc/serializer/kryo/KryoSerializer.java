@@ -1,17 +1,17 @@
 package com.mime.rpc.serializer.kryo;
 
-import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.mime.rpc.enumeration.SerializerCode;
 import com.mime.rpc.exception.SerializeException;
 import com.mime.rpc.serializer.CommonSerializer;
+import com.mime.rpc.serializer.kryo.KryoPool.PooledKryo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-
 /**
  * Kryo序列化效率很高,但是只兼容JAVA语言
  * 因为项目服务端、客户端都是使用JAVA语言所以采用Kryo就行
@@ -47,65 +47,98 @@ import java.io.ByteArrayOutputStream;
  *
  * 什么是内存泄漏
  * 内存泄漏是指用户向系统申请分配内存进行使用，可是使用完了以后却没有释放，结果那块内存用户不能访问（也许你把它的地址给弄丢了），而系统也不能再把它分配给需要的程序。
+ *
+ * 早先的做法是每次用完都调用kryoThreadLocal.remove()来规避上述泄露，代价是每条消息都要重新创建并配置Kryo对象
+ * 现在改为从有界的KryoPool中借还Kryo及其Input/Output：对象可以复用，又不与线程的生命周期绑定，见{@link KryoPool}
  */
 public class KryoSerializer implements CommonSerializer {
 
     private static final Logger logger = LoggerFactory.getLogger(KryoSerializer.class);
 
-
     /**
-     * Kryo对象不是线程安全的，所以需要借用ThreadLocal来保证线程安全性--保证每个线程使用的Kryo对象是唯一的
+     * Kryo对象不是线程安全的，借出期间由当前线程独占，用完归还以供复用
      */
-    private static final ThreadLocal<Kryo> kryoThreadLocal= ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        /*
-        //Kryo支持对类进行注册注册行为会给每一个Class编一个号码，编号从0开始（这样使得序列化大小更小，比起默认的全限定类名）
-        //但是，Kryo并不保证同一个Class每一次的注册的号码都相同（比如重启JVM后，用户访问资源的顺序不同，就会导致类注册的先后顺序不同）
-        //也就是说，同样的代码、同一个Class ，在两台机器上的注册编号可能不一致。
-        //那么一台机器序列化之后的结果可能就无法在另一台机器上反序列化（即多个JVM、分布式下不要开启注册功能）。
-        kryo.register(RpcResponse.class);
-        kryo.register(RpcRequest.class);
-        //该值默认为false，如果要使用类注册需要置为true
-        kryo.setRegistrationRequired(true);
-        */
-        //对循环引用的检查支持（A依赖B B又依赖A），kryo默认会打开这个属性帮你检验循环引用情况，可以有效防止栈内存溢出
-        kryo.setReferences(true);
-        return kryo;
-    });
+    private static final KryoPool kryoPool = new KryoPool();
 
     @Override
     public byte[] serialize(Object obj) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             Output output = new Output(byteArrayOutputStream)) {
-            //获得当前线程的 Kryo 实例
-            Kryo kryo = kryoThreadLocal.get();
+        PooledKryo pooledKryo = kryoPool.borrow();
+        try {
+            Output output = pooledKryo.output();
+            output.clear();
             // Object->byte:将对象序列化为byte数组
-            kryo.writeObject(output, obj);
+            pooledKryo.kryo().writeObject(output, obj);
 /*            //这个方法还可以写入序列化对象的类型信息，这样反序列化时候就可以不提供类型信息
             kryo.writeClassAndObject(output, obj);*/
-            //为了放置ThreadLocal的value属性内存泄露的举措，但是这样Kryo对象似乎只使用了一次就不再用了
-            kryoThreadLocal.remove();
             return output.toBytes();
         } catch (Exception e) {
             logger.error("序列化时有错误发生:", e);
             throw new SerializeException("序列化时有错误发生");
+        } finally {
+            kryoPool.release(pooledKryo);
+        }
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        PooledKryo pooledKryo = kryoPool.borrow();
+        try {
+            //Output的暂存区写满或flush时直接写入ByteBuf，暂存区本身被池化复用
+            Output output = pooledKryo.output();
+            output.setOutputStream(new ByteBufOutputStream(out));
+            pooledKryo.kryo().writeObject(output, obj);
+            output.flush();
+        } catch (Exception e) {
+            logger.error("序列化时有错误发生:", e);
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            kryoPool.release(pooledKryo);
         }
     }
 
     @Override
     public Object deserialize(byte[] bytes, Class<?> clazz) {
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-             Input input = new Input(byteArrayInputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
+        PooledKryo pooledKryo = kryoPool.borrow();
+        try {
+            Input input = pooledKryo.input();
+            input.setBuffer(bytes);
             // byte->Object:从byte数组中反序列化出对对象
-            Object o = kryo.readObject(input, clazz);
+            return pooledKryo.kryo().readObject(input, clazz);
 /*            //相应的，Kryo也有可以直接读取带有对象信息字节流的方法
             kryo.readClassAndObject(input);*/
-            kryoThreadLocal.remove();
+        } catch (Exception e) {
+            logger.error("反序列化时有错误发生:", e);
+            throw new SerializeException("反序列化时有错误发生");
+        } finally {
+            kryoPool.release(pooledKryo);
+        }
+    }
+
+    /**
+     * 堆内缓冲区直接包装其底层数组，堆外缓冲区借助nioBuffer视图读取，两种情况都不会拷贝消息体
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        int length = in.readableBytes();
+        PooledKryo pooledKryo = kryoPool.borrow();
+        try {
+            Input input;
+            if (in.hasArray()) {
+                input = pooledKryo.input();
+                input.setBuffer(in.array(), in.arrayOffset() + in.readerIndex(), length);
+            } else {
+                ByteBufferInput byteBufferInput = pooledKryo.byteBufferInput();
+                byteBufferInput.setBuffer(in.nioBuffer());
+                input = byteBufferInput;
+            }
+            Object o = pooledKryo.kryo().readObject(input, clazz);
+            in.skipBytes(length);
             return o;
         } catch (Exception e) {
             logger.error("反序列化时有错误发生:", e);
             throw new SerializeException("反序列化时有错误发生");
+        } finally {
+            kryoPool.release(pooledKryo);
         }
     }
 
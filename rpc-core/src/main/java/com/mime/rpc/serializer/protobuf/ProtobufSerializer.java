@@ -1,12 +1,17 @@
 package com.mime.rpc.serializer.protobuf;
 
 import com.mime.rpc.enumeration.SerializerCode;
+import com.mime.rpc.exception.SerializeException;
 import com.mime.rpc.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.protostuff.ByteBufferInput;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -21,14 +26,21 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class ProtobufSerializer implements CommonSerializer {
 
-    private LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
-    private Map<Class<?>, Schema<?>> schemaCache = new ConcurrentHashMap<>();
+    /**
+     * LinkedBuffer不是线程安全的，序列化器作为单例被多个IO线程共享，所以每个线程各持有一个
+     * 缓冲区只有默认的512字节，写满后protostuff会自行链接新的节点，clear()后又只保留首个节点，长期持有的内存很小
+     */
+    private static final ThreadLocal<LinkedBuffer> bufferThreadLocal =
+            ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+    //命中时只是一次ConcurrentHashMap的无锁读
+    private final Map<Class<?>, Schema<?>> schemaCache = new ConcurrentHashMap<>();
 
     @Override
     @SuppressWarnings("unchecked")
     public byte[] serialize(Object obj) {
         Class clazz = obj.getClass();
         Schema schema = getSchema(clazz);
+        LinkedBuffer buffer = bufferThreadLocal.get();
         byte[] data;
         try {
             data = ProtostuffIOUtil.toByteArray(obj, schema, buffer);
@@ -38,6 +50,22 @@ public class ProtobufSerializer implements CommonSerializer {
         return data;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Object obj, ByteBuf out) {
+        Class clazz = obj.getClass();
+        Schema schema = getSchema(clazz);
+        LinkedBuffer buffer = bufferThreadLocal.get();
+        try {
+            //LinkedBuffer写满即刷到ByteBuf，不再拼接出完整的byte[]
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("序列化时有错误发生");
+        } finally {
+            buffer.clear();
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Object deserialize(byte[] bytes, Class<?> clazz) {
@@ -47,6 +75,30 @@ public class ProtobufSerializer implements CommonSerializer {
         return obj;
     }
 
+    /**
+     * 堆内缓冲区按偏移量直接读取底层数组，堆外缓冲区通过nioBuffer视图读取，均不拷贝消息体
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        Schema schema = getSchema(clazz);
+        Object obj = schema.newMessage();
+        int length = in.readableBytes();
+        if (in.hasArray()) {
+            ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), length, obj, schema);
+        } else {
+            try {
+                ByteBufferInput input = new ByteBufferInput(in.nioBuffer(), true);
+                schema.mergeFrom(input, obj);
+                input.checkLastTagWas(0);
+            } catch (IOException e) {
+                throw new SerializeException("反序列化时有错误发生");
+            }
+        }
+        in.skipBytes(length);
+        return obj;
+    }
+
     @Override
     public int getCode() {
         return SerializerCode.valueOf("PROTOBUF").getCode();
@@ -58,10 +110,7 @@ public class ProtobufSerializer implements CommonSerializer {
         if (Objects.isNull(schema)) {
             // 这个schema通过RuntimeSchema进行懒创建并缓存
             // 所以可以一直调用RuntimeSchema.getSchema(),这个方法是线程安全的
-            schema = RuntimeSchema.getSchema(clazz);
-            if (Objects.nonNull(schema)) {
-                schemaCache.put(clazz, schema);
-            }
+            schema = schemaCache.computeIfAbsent(clazz, RuntimeSchema::getSchema);
         }
         return schema;
     }
@@ -4,6 +4,7 @@ package com.mime.test1;
 import com.mime.rpc.api.ByeService;
 import com.mime.rpc.api.HelloObject;
 import com.mime.rpc.api.HelloService;
+import com.mime.rpc.api.HelloServiceAsync;
 import com.mime.rpc.remoting.transport.RpcClientProxy;
 import com.mime.rpc.remoting.transport.netty.client.NettyClient;
 import com.mime.rpc.serializer.CommonSerializer;
@@ -31,6 +32,9 @@ public class NettyTestClient {
         System.out.println("res4 "+res4);
         String res5 = helloService.hello(object);
         System.out.println("res5 "+res5);
+        //异步调用，不阻塞当前线程
+        HelloServiceAsync helloServiceAsync = rpcClientProxy.getProxy(HelloServiceAsync.class);
+        helloServiceAsync.hello(object).thenAccept(res6 -> System.out.println("res6 " + res6)).join();
         ByeService byeService = rpcClientProxy.getProxy(ByeService.class);
         System.out.println(byeService.bye("000111Netty555"));
     }
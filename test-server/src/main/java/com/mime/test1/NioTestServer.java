@@ -0,0 +1,19 @@
+package com.mime.test1;
+
+
+import com.mime.rpc.annotation.ServiceScan;
+import com.mime.rpc.remoting.transport.RpcServer;
+import com.mime.rpc.remoting.transport.nio.server.NioServer;
+import com.mime.rpc.serializer.CommonSerializer;
+
+/**
+ * 测试用服务提供方（服务端），只依赖JDK NIO
+ */
+@ServiceScan
+public class NioTestServer {
+
+    public static void main(String[] args) {
+        RpcServer server = new NioServer(CommonSerializer.KRYO_SERIALIZER);
+        server.start();
+    }
+}